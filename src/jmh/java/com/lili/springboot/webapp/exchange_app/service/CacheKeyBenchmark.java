@@ -0,0 +1,66 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lili.springboot.webapp.exchange_app.model.CacheKey;
+
+/**
+ * Building and hashing CacheKeys, and looking them up in a map the size of a busy view cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+    private final Map<CacheKey, Boolean> keys = new HashMap<>();
+    private CacheKey key;
+
+    @Setup
+    public void setUp() {
+        String[] codes = Payloads.FRANKFURTER_RATES.keySet().toArray(String[]::new);
+        for (String base : codes) {
+            for (int i = 0; i + 2 < codes.length; i++) {
+                keys.put(CacheKey.of(base, Set.of(codes[i], codes[i + 1], codes[i + 2])), Boolean.TRUE);
+            }
+        }
+        key = CacheKey.parse("EUR", "USD,GBP,JPY");
+    }
+
+    @Benchmark
+    public int parseAndHash() {
+        return CacheKey.parse("eur", "usd, GBP,jpy").hashCode();
+    }
+
+    @Benchmark
+    public int ofSetAndHash() {
+        return CacheKey.of("eur", Set.of("usd", "GBP", "jpy")).hashCode();
+    }
+
+    @Benchmark
+    public int hashPrebuilt() {
+        return key.hashCode();
+    }
+
+    // A fresh key for an existing entry: hash plus a full equals against the stored key
+    @Benchmark
+    public Boolean lookupEqualKey() {
+        return keys.get(CacheKey.parse("GBP", "JPY,HKD,HUF"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lili.springboot.webapp.exchange_app.model.CacheKey;
+import com.lili.springboot.webapp.exchange_app.model.ExchangeRateResponse;
+
+/**
+ * Cache-hit path of getExchangeRates: the request key is built from raw, mixed-case input the way
+ * the controller does it, looked up, and the response projected (or reused) from the cached table.
+ * The pivot table is loaded once in setup from an in-memory provider, no request reaches the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangeRateServiceBenchmark {
+
+    private ExchangeRateService service;
+    private CacheKey prebuiltKey;
+
+    @Setup
+    public void setUp() {
+        ExchangeRateApiClient provider = new ExchangeRateApiClient() {
+            @Override
+            public String getApiName() {
+                return "inMemory";
+            }
+
+            @Override
+            public Map<String, BigDecimal> getExchangeRates(String baseCurrency, Set<String> symbols) {
+                return Payloads.FRANKFURTER_RATES;
+            }
+        };
+        service = new ExchangeRateService(List.of(provider), new MetricsService());
+        service.getExchangeRates("EUR", Set.of());
+        prebuiltKey = CacheKey.of("EUR", Set.of("USD", "GBP", "JPY"));
+    }
+
+    // Query parameters as the controller receives them: parsed and upper-cased into a key on every call
+    @Benchmark
+    public ExchangeRateResponse pivotHitFromRawParameters() {
+        return service.getExchangeRates(CacheKey.parse("eur", "usd, GBP,jpy"));
+    }
+
+    @Benchmark
+    public ExchangeRateResponse pivotHitFromSymbolSet() {
+        return service.getExchangeRates("eur", Set.of("usd", "GBP", "jpy"));
+    }
+
+    // Cross rates triangulated from the pivot table, derived once per pivot table
+    @Benchmark
+    public ExchangeRateResponse derivedHitFromRawParameters() {
+        return service.getExchangeRates(CacheKey.parse("usd", "eur, GBP,jpy"));
+    }
+
+    // Lookup and projection alone, without building the key
+    @Benchmark
+    public ExchangeRateResponse pivotHitPrebuiltKey() {
+        return service.getExchangeRates(prebuiltKey);
+    }
+}
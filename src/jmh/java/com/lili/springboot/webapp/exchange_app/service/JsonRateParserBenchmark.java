@@ -0,0 +1,83 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Parsing of provider responses as they arrive from WebClient: the body is split into chunks of
+ * chunkSize bytes and fed to the non-blocking parser one buffer at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonRateParserBenchmark {
+
+    @Param({"1024", "65536"})
+    private int chunkSize;
+
+    private final JsonRateParser parser = new JsonRateParser(new ObjectMapper());
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+    private List<byte[]> frankfurterChunks;
+    private List<byte[]> freeCurrencyChunks;
+
+    @Setup
+    public void setUp() {
+        frankfurterChunks = split(Payloads.FRANKFURTER_JSON);
+        freeCurrencyChunks = split(Payloads.FREE_CURRENCY_JSON);
+    }
+
+    // Full table of the base, as fetched on a cache miss
+    @Benchmark
+    public Map<String, BigDecimal> frankfurterFullTable() {
+        return parser.parseRates(body(frankfurterChunks), "rates", Set.of()).block();
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> freeCurrencyFullTable() {
+        return parser.parseRates(body(freeCurrencyChunks), "eur", Set.of()).block();
+    }
+
+    // A few symbols out of a few hundred: every other entry is skipped without building a BigDecimal
+    @Benchmark
+    public Map<String, BigDecimal> freeCurrencyFewSymbols() {
+        return parser.parseRates(body(freeCurrencyChunks), "eur", Set.of("USD", "GBP", "JPY")).block();
+    }
+
+    private Flux<DataBuffer> body(List<byte[]> chunks) {
+        return Flux.fromIterable(chunks).map(bufferFactory::wrap);
+    }
+
+    private List<byte[]> split(byte[] payload) {
+        List<byte[]> chunks = new ArrayList<>();
+        for (int start = 0; start < payload.length; start += chunkSize) {
+            chunks.add(Arrays.copyOfRange(payload, start, Math.min(payload.length, start + chunkSize)));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,53 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MetricsService updates made by every request, with all benchmark threads hitting the same
+ * service. The shared AtomicLong is the contended baseline the LongAdder counters are measured against.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class MetricsServiceBenchmark {
+
+    private final MetricsService metricsService = new MetricsService();
+    private final AtomicLong sharedAtomicLong = new AtomicLong();
+
+    @Benchmark
+    public void incrementTotalQueries() {
+        metricsService.incrementTotalQueries();
+    }
+
+    @Benchmark
+    public void incrementApiRequests() {
+        metricsService.incrementApiRequests("frankfurter");
+    }
+
+    // Counter and latency histogram of a cache hit
+    @Benchmark
+    public void recordCacheHit() {
+        metricsService.recordCacheLatency(true, 2_000);
+    }
+
+    @Benchmark
+    public long atomicLongBaseline() {
+        return sharedAtomicLong.incrementAndGet();
+    }
+}
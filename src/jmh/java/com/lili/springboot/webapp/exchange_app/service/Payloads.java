@@ -0,0 +1,64 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Provider responses shaped like the real ones, shared by the benchmarks.
+ */
+final class Payloads {
+
+    // Frankfurter's "latest?base=EUR": the 30 ECB reference currencies, 4 to 5 significant digits
+    static final Map<String, BigDecimal> FRANKFURTER_RATES = new LinkedHashMap<>();
+    static {
+        String[][] rates = {
+            {"AUD", "1.6459"}, {"BGN", "1.9558"}, {"BRL", "6.1345"}, {"CAD", "1.5042"}, {"CHF", "0.9388"},
+            {"CNY", "7.8268"}, {"CZK", "25.066"}, {"DKK", "7.4591"}, {"GBP", "0.8427"}, {"HKD", "8.4513"},
+            {"HUF", "405.33"}, {"IDR", "17662"}, {"ILS", "4.0105"}, {"INR", "92.375"}, {"ISK", "144.9"},
+            {"JPY", "162.11"}, {"KRW", "1491.2"}, {"MXN", "21.114"}, {"MYR", "4.6822"}, {"NOK", "11.731"},
+            {"NZD", "1.8062"}, {"PHP", "63.115"}, {"PLN", "4.3068"}, {"RON", "4.9755"}, {"SEK", "11.483"},
+            {"SGD", "1.4393"}, {"THB", "36.282"}, {"TRY", "37.238"}, {"USD", "1.0826"}, {"ZAR", "19.825"},
+        };
+        for (String[] rate : rates) {
+            FRANKFURTER_RATES.put(rate[0], new BigDecimal(rate[1]));
+        }
+    }
+
+    static final byte[] FRANKFURTER_JSON = frankfurterJson().getBytes();
+
+    // Free Currency API's "eur.json": a few hundred fiat, metal and crypto codes with up to 16 significant digits
+    static final byte[] FREE_CURRENCY_JSON = freeCurrencyJson(340).getBytes();
+
+    private Payloads() {}
+
+    private static String frankfurterJson() {
+        StringBuilder json = new StringBuilder("{\"amount\":1.0,\"base\":\"EUR\",\"date\":\"2024-11-29\",\"rates\":{");
+        FRANKFURTER_RATES.forEach((code, rate) -> json.append('"').append(code).append("\":").append(rate).append(','));
+        json.setLength(json.length() - 1);
+        return json.append("}}").toString();
+    }
+
+    private static String freeCurrencyJson(int currencies) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("{\"date\":\"2024-11-29\",\"eur\":{");
+        FRANKFURTER_RATES.forEach((code, rate) -> appendRate(json, code.toLowerCase(Locale.ROOT),
+            rate.doubleValue() * (1 + random.nextGaussian() / 1000)));
+        for (int i = FRANKFURTER_RATES.size(); i < currencies; i++) {
+            // Distinct made-up codes, none of them an ECB currency
+            String code = "x" + (char) ('a' + i / 26) + (char) ('a' + i % 26);
+            // Spans tiny crypto rates to large exotic ones, as the real list does
+            appendRate(json, code, Math.pow(10, random.nextInt(12) - 5) * (1 + random.nextDouble()));
+        }
+        json.setLength(json.length() - 1);
+        return json.append("}}").toString();
+    }
+
+    private static void appendRate(StringBuilder json, String code, double rate) {
+        BigDecimal value = new BigDecimal(rate).round(MathContext.DECIMAL64).stripTrailingZeros();
+        json.append('"').append(code).append("\":").append(value.toPlainString()).append(',');
+    }
+}
@@ -0,0 +1,67 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+
+/**
+ * Averaging of N provider results into one RateTable, as done once per upstream fetch.
+ * Every provider reports the 30 ECB currencies, each with its own small deviation and precision.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateAveragerBenchmark {
+
+    @Param({"2", "4", "8"})
+    private int providers;
+
+    private List<Map<String, BigDecimal>> results;
+    private Instant fetchedAt;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        results = new ArrayList<>(providers);
+        for (int i = 0; i < providers; i++) {
+            MathContext precision = new MathContext(5 + random.nextInt(8));
+            Map<String, BigDecimal> rates = new LinkedHashMap<>();
+            Payloads.FRANKFURTER_RATES.forEach((code, rate) -> rates.put(code,
+                new BigDecimal(rate.doubleValue() * (1 + random.nextGaussian() / 1000)).round(precision)));
+            results.add(rates);
+        }
+        fetchedAt = Instant.now();
+    }
+
+    @Benchmark
+    public RateTable average() {
+        RateAverager averager = new RateAverager();
+        for (Map<String, BigDecimal> rates : results) {
+            averager.addAll(rates);
+        }
+        return averager.average("EUR", fetchedAt);
+    }
+}
@@ -0,0 +1,76 @@
+package com.lili.springboot.webapp.exchange_app.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Request paths with a realistic popularity skew: bases are drawn from a Zipf distribution over
+ * the ECB currencies (EUR and USD most popular), and each base is asked for one of a few symbol
+ * lists of one to four currencies. Hot bases stay cached and hit, the long tail expires between
+ * requests and misses; the resulting hit/miss split is reported from the application's metrics.
+ * The mix is seeded, so runs with the same settings send the same sequence of requests.
+ * Not thread-safe: only the generator thread draws from it.
+ */
+final class KeyMix {
+
+    private static final int SYMBOL_LISTS_PER_BASE = 4;
+
+    private final Random random;
+    private final String[] paths;
+    private final double[] cumulative;
+
+    KeyMix(double zipfExponent, long seed) {
+        this.random = new Random(seed);
+        List<String> currencies = new ArrayList<>(StubProvider.EUR_RATES.keySet());
+        // Popularity order: the majors first, then the rest as listed
+        for (String major : List.of("GBP", "JPY", "USD", "EUR")) {
+            currencies.remove(major);
+            currencies.add(0, major);
+        }
+
+        int bases = currencies.size();
+        paths = new String[bases * SYMBOL_LISTS_PER_BASE];
+        cumulative = new double[paths.length];
+        double total = 0;
+        for (int rank = 0; rank < bases; rank++) {
+            String base = currencies.get(rank);
+            double weight = 1 / Math.pow(rank + 1, zipfExponent);
+            for (int list = 0; list < SYMBOL_LISTS_PER_BASE; list++) {
+                StringBuilder symbols = new StringBuilder();
+                int count = 1 + random.nextInt(4);
+                for (int i = 0; i < count; i++) {
+                    String symbol = currencies.get(random.nextInt(bases));
+                    if (!symbol.equals(base) && symbols.indexOf(symbol) < 0) {
+                        symbols.append(symbols.isEmpty() ? "" : ",").append(symbol);
+                    }
+                }
+                if (symbols.isEmpty()) {
+                    symbols.append(base.equals("USD") ? "EUR" : "USD");
+                }
+                int index = rank * SYMBOL_LISTS_PER_BASE + list;
+                paths[index] = "/api/exchangeRates/" + base + "?symbols=" + symbols;
+                total += weight / SYMBOL_LISTS_PER_BASE;
+                cumulative[index] = total;
+            }
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    String next() {
+        double draw = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < draw) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return paths[low];
+    }
+}
@@ -0,0 +1,85 @@
+package com.lili.springboot.webapp.exchange_app.load;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Settings of one load test run, read from "load.*" system properties (-Dload.rate=2000).
+ * Any "app.*", "server.*" or "spring.*" system property is handed to the application as well,
+ * e.g. -Dapp.exchange-rate.fetch-mode=sequential or -Dapp.exchange-rate.cache-ttl=30.
+ */
+record LoadConfig(
+    int rate,
+    Duration warmup,
+    Duration duration,
+    Duration requestTimeout,
+    double zipfExponent,
+    long seed,
+    StubProvider.Behavior frankfurter,
+    StubProvider.Behavior freeCurrency,
+    double sloP99Millis,
+    double sloP999Millis,
+    double sloErrorRate,
+    List<String> appArguments) {
+
+    static LoadConfig fromSystemProperties() {
+        // Short-lived tables and no stale serving, so tail bases keep missing while hot ones hit
+        Map<String, String> appProperties = new LinkedHashMap<>();
+        appProperties.put("app.exchange-rate.cache-ttl", "10");
+        appProperties.put("app.exchange-rate.stale-ttl", "0");
+        appProperties.put("app.exchange-rate.triangulate", "false");
+        appProperties.put("app.exchange-rate.cache-snapshot-file", "");
+        appProperties.put("app.exchange-rate.history-backfill-days", "0");
+        appProperties.put("app.exchange-rate.history-directory", "target/load-test/history");
+        // Every generated request comes from the same address, one client's rate limit would cap the run
+        appProperties.put("app.exchange-rate.client-rate-limit", "0");
+        appProperties.put("logging.level.root", "WARN");
+        appProperties.put("logging.level.org.springframework.web", "WARN");
+        Properties properties = System.getProperties();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("app.") || name.startsWith("server.") || name.startsWith("spring.")) {
+                appProperties.put(name, properties.getProperty(name));
+            }
+        }
+        List<String> appArguments = new ArrayList<>();
+        appProperties.forEach((name, value) -> appArguments.add("--" + name + "=" + value));
+
+        return new LoadConfig(
+            integer("load.rate", 500),
+            seconds("load.warmup", 10),
+            seconds("load.duration", 30),
+            seconds("load.request-timeout", 10),
+            decimal("load.zipf-exponent", 1.1),
+            Long.parseLong(System.getProperty("load.seed", "42")),
+            behavior("load.frankfurter", 30, 200, 0.01),
+            behavior("load.freecurrency", 60, 400, 0.02),
+            decimal("load.slo.p99-ms", 100),
+            decimal("load.slo.p999-ms", 500),
+            decimal("load.slo.error-rate", 0.01),
+            List.copyOf(appArguments));
+    }
+
+    // Latency (median and p99 in ms) and error rate of one stub provider
+    private static StubProvider.Behavior behavior(String prefix, double medianMillis, double p99Millis, double errorRate) {
+        return new StubProvider.Behavior(
+            decimal(prefix + ".median-ms", medianMillis),
+            decimal(prefix + ".p99-ms", p99Millis),
+            decimal(prefix + ".error-rate", errorRate));
+    }
+
+    private static int integer(String name, int defaultValue) {
+        return Integer.parseInt(System.getProperty(name, String.valueOf(defaultValue)));
+    }
+
+    private static double decimal(String name, double defaultValue) {
+        return Double.parseDouble(System.getProperty(name, String.valueOf(defaultValue)));
+    }
+
+    private static Duration seconds(String name, long defaultValue) {
+        return Duration.ofSeconds(Long.parseLong(System.getProperty(name, String.valueOf(defaultValue))));
+    }
+}
@@ -0,0 +1,117 @@
+package com.lili.springboot.webapp.exchange_app.load;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lili.springboot.webapp.exchange_app.ExchangeAppApplication;
+
+/**
+ * End-to-end load test on one machine, without network access: starts stub Frankfurter and
+ * Free Currency API servers, boots the application against them on a random port, drives
+ * /api/exchangeRates at a fixed arrival rate and prints throughput, latency percentiles and
+ * the SLO verdict. Exits with status 1 when an SLO is missed, so it can gate a release.
+ *
+ * mvn -Pload-test test-compile exec:java -Dload.rate=1000 -Dload.duration=60
+ *
+ * The full latency distribution is written to target/load-test/latency.hgrm (HdrHistogram
+ * percentile format, milliseconds) for plotting or comparing runs.
+ */
+public final class LoadHarness {
+
+    private static final Path REPORT_DIRECTORY = Path.of("target", "load-test");
+
+    private LoadHarness() {}
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.fromSystemProperties();
+        StubProvider frankfurter = new StubProvider(StubProvider.Format.FRANKFURTER, config.frankfurter());
+        StubProvider freeCurrency = new StubProvider(StubProvider.Format.FREE_CURRENCY, config.freeCurrency());
+        frankfurter.start();
+        freeCurrency.start();
+
+        List<String> appArguments = new ArrayList<>(config.appArguments());
+        appArguments.add("--server.port=0");
+        appArguments.add("--app.exchange-rate.provider-base-urls.frankfurter=" + frankfurter.baseUrl());
+        appArguments.add("--app.exchange-rate.provider-base-urls.freeCurrencyRates=" + freeCurrency.baseUrl());
+
+        boolean passed;
+        try (ConfigurableApplicationContext context =
+                 SpringApplication.run(ExchangeAppApplication.class, appArguments.toArray(String[]::new))) {
+            URI server = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+            System.out.printf(Locale.ROOT, "Load test: %d req/s for %d s after %d s of warm-up against %s%n",
+                config.rate(), config.duration().toSeconds(), config.warmup().toSeconds(), server);
+
+            OpenLoadGenerator generator = new OpenLoadGenerator(server, new KeyMix(config.zipfExponent(), config.seed()),
+                config.requestTimeout());
+            OpenLoadGenerator.Result result = generator.run(config.rate(), config.warmup(), config.duration());
+            passed = report(config, result, fetchMetrics(server), frankfurter, freeCurrency, System.out);
+        } finally {
+            frankfurter.shutdown();
+            freeCurrency.shutdown();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean report(LoadConfig config, OpenLoadGenerator.Result result, JsonNode metrics,
+                                  StubProvider frankfurter, StubProvider freeCurrency, PrintStream out) throws IOException {
+        Histogram latency = result.latencyMicros();
+        double p99 = millis(latency, 99);
+        double p999 = millis(latency, 99.9);
+
+        out.printf(Locale.ROOT, "Requests     %d sent, %d ok, %d failed (%.2f%%)%n",
+            result.sent(), result.succeeded(), result.failed(), result.errorRate() * 100);
+        out.printf(Locale.ROOT, "Throughput   %.1f req/s (target %d), generator at most %d ms behind schedule%n",
+            result.throughput(), config.rate(), result.maxSendLag().toMillis());
+        out.printf(Locale.ROOT, "Latency ms   p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+            millis(latency, 50), millis(latency, 90), p99, p999, latency.getMaxValue() / 1000.0);
+        out.printf(Locale.ROOT, "Cache        %d hits, %d misses (whole run, from /api/metrics)%n",
+            metrics.path("cache_hits").asLong(), metrics.path("cache_misses").asLong());
+        out.printf(Locale.ROOT, "Stubs        frankfurter %d calls (%d errors, %d not modified), freeCurrency %d calls (%d errors, %d not modified)%n",
+            frankfurter.requests.sum(), frankfurter.errors.sum(), frankfurter.notModified.sum(),
+            freeCurrency.requests.sum(), freeCurrency.errors.sum(), freeCurrency.notModified.sum());
+
+        boolean p99Met = p99 <= config.sloP99Millis();
+        boolean p999Met = p999 <= config.sloP999Millis();
+        boolean errorsMet = result.errorRate() <= config.sloErrorRate();
+        out.printf(Locale.ROOT, "SLO          p99 <= %.0f ms: %s, p99.9 <= %.0f ms: %s, errors <= %.2f%%: %s%n",
+            config.sloP99Millis(), verdict(p99Met), config.sloP999Millis(), verdict(p999Met),
+            config.sloErrorRate() * 100, verdict(errorsMet));
+
+        Files.createDirectories(REPORT_DIRECTORY);
+        Path distribution = REPORT_DIRECTORY.resolve("latency.hgrm");
+        try (PrintStream file = new PrintStream(Files.newOutputStream(distribution))) {
+            latency.outputPercentileDistribution(file, 1000.0);
+        }
+        out.println("Latency distribution written to " + distribution);
+        return p99Met && p999Met && errorsMet;
+    }
+
+    private static JsonNode fetchMetrics(URI server) throws IOException, InterruptedException {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+            HttpRequest.newBuilder(server.resolve("/api/metrics")).build(), HttpResponse.BodyHandlers.ofString());
+        return new ObjectMapper().readTree(response.body());
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static String verdict(boolean met) {
+        return met ? "PASS" : "FAIL";
+    }
+}
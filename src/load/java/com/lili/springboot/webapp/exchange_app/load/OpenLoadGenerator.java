@@ -0,0 +1,110 @@
+package com.lili.springboot.webapp.exchange_app.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Open-model load: requests are started on a fixed schedule, one every 1/rate seconds, whether or
+ * not earlier ones have completed, the way independent clients arrive. Latency is measured from
+ * the time a request was scheduled to start, not from when it was actually sent, so a stalled
+ * server (or a generator that fell behind) shows up in the percentiles instead of silently
+ * slowing the arrivals down (coordinated omission).
+ */
+final class OpenLoadGenerator {
+
+    // maxSendLag: how far the generator itself fell behind its schedule, included in the latencies
+    record Result(long sent, long succeeded, long failed, Histogram latencyMicros, Duration measured, Duration maxSendLag) {
+
+        double throughput() {
+            return succeeded / (measured.toNanos() / 1e9);
+        }
+
+        double errorRate() {
+            return sent == 0 ? 0 : (double) failed / sent;
+        }
+    }
+
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .executor(Executors.newVirtualThreadPerTaskExecutor())
+        .build();
+
+    private final URI server;
+    private final KeyMix keyMix;
+    private final Duration requestTimeout;
+
+    OpenLoadGenerator(URI server, KeyMix keyMix, Duration requestTimeout) {
+        this.server = server;
+        this.keyMix = keyMix;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Sends rate requests per second for warmup + duration; only requests scheduled after the
+     * warm-up are counted. Returns once every counted request has completed or timed out.
+     */
+    Result run(int rate, Duration warmup, Duration duration) throws InterruptedException {
+        Recorder recorder = new Recorder(3);
+        LongAdder sent = new LongAdder();
+        LongAdder succeeded = new LongAdder();
+        LongAdder failed = new LongAdder();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+        long maxLag = 0;
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean counted = intended >= measureStart;
+            if (counted) {
+                sent.increment();
+                maxLag = Math.max(maxLag, System.nanoTime() - intended);
+            }
+
+            HttpRequest request = HttpRequest.newBuilder(server.resolve(keyMix.next()))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                if (!counted) {
+                    return;
+                }
+                recorder.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended)));
+                if (error == null && response.statusCode() == 200) {
+                    succeeded.increment();
+                } else {
+                    failed.increment();
+                }
+            });
+        }
+
+        // Let the last requests finish; anything still open after the timeout has failed anyway
+        long deadline = System.nanoTime() + requestTimeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (succeeded.sum() + failed.sum() < sent.sum() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        long unanswered = sent.sum() - succeeded.sum() - failed.sum();
+        return new Result(sent.sum(), succeeded.sum(), failed.sum() + unanswered,
+            recorder.getIntervalHistogram(), duration, Duration.ofNanos(maxLag));
+    }
+}
@@ -0,0 +1,141 @@
+package com.lili.springboot.webapp.exchange_app.load;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Local stand-in for one rate provider, answering with Frankfurter's or Free Currency API's
+ * response format. Each response is delayed by a log-normal latency with the configured median
+ * and p99, and a configured share of requests fails with a 500. Bodies never change, so every
+ * one carries a fixed ETag and a matching If-None-Match is answered with a 304.
+ */
+final class StubProvider {
+
+    // Median and p99 latency in milliseconds, and the share of requests answered with a 500
+    record Behavior(double medianMillis, double p99Millis, double errorRate) {}
+
+    enum Format { FRANKFURTER, FREE_CURRENCY }
+
+    // The 30 ECB currencies, as units per EUR
+    static final Map<String, BigDecimal> EUR_RATES = new LinkedHashMap<>();
+    static {
+        String[][] rates = {
+            {"EUR", "1"}, {"AUD", "1.6459"}, {"BGN", "1.9558"}, {"BRL", "6.1345"}, {"CAD", "1.5042"},
+            {"CHF", "0.9388"}, {"CNY", "7.8268"}, {"CZK", "25.066"}, {"DKK", "7.4591"}, {"GBP", "0.8427"},
+            {"HKD", "8.4513"}, {"HUF", "405.33"}, {"IDR", "17662"}, {"ILS", "4.0105"}, {"INR", "92.375"},
+            {"ISK", "144.9"}, {"JPY", "162.11"}, {"KRW", "1491.2"}, {"MXN", "21.114"}, {"MYR", "4.6822"},
+            {"NOK", "11.731"}, {"NZD", "1.8062"}, {"PHP", "63.115"}, {"PLN", "4.3068"}, {"RON", "4.9755"},
+            {"SEK", "11.483"}, {"SGD", "1.4393"}, {"THB", "36.282"}, {"TRY", "37.238"}, {"USD", "1.0826"},
+            {"ZAR", "19.825"},
+        };
+        for (String[] rate : rates) {
+            EUR_RATES.put(rate[0], new BigDecimal(rate[1]));
+        }
+    }
+
+    private final Format format;
+    private final Behavior behavior;
+    private final MockWebServer server = new MockWebServer();
+    // Response body per base, built once
+    private final Map<String, String> bodies = new LinkedHashMap<>();
+    private final double sigma;
+    final LongAdder requests = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder notModified = new LongAdder();
+
+    StubProvider(Format format, Behavior behavior) {
+        this.format = format;
+        this.behavior = behavior;
+        // p99 of a log-normal distribution is median * e^(2.326 * sigma)
+        this.sigma = Math.log(Math.max(behavior.p99Millis(), behavior.medianMillis()) / behavior.medianMillis()) / 2.326;
+        for (String base : EUR_RATES.keySet()) {
+            bodies.put(base, body(base));
+        }
+    }
+
+    void start() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request);
+            }
+        });
+        server.start();
+    }
+
+    void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    String baseUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        requests.increment();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delayMicros = (long) (behavior.medianMillis() * 1000 * Math.exp(sigma * random.nextGaussian()));
+
+        String body = bodies.get(base(request));
+        MockResponse response;
+        if (random.nextDouble() < behavior.errorRate()) {
+            errors.increment();
+            response = new MockResponse().setResponseCode(500).setBody("{\"message\":\"stub error\"}");
+        } else if (body == null) {
+            response = new MockResponse().setResponseCode(404).setBody("{\"message\":\"not found\"}");
+        } else if (etag(request).equals(request.getHeader("If-None-Match"))) {
+            notModified.increment();
+            response = new MockResponse().setResponseCode(304).addHeader("ETag", etag(request));
+        } else {
+            response = new MockResponse().setBody(body).addHeader("Content-Type", "application/json")
+                .addHeader("ETag", etag(request));
+        }
+        return response.setHeadersDelay(delayMicros, TimeUnit.MICROSECONDS);
+    }
+
+    // Differs per URL, the same path with other query parameters is another resource
+    private String etag(RecordedRequest request) {
+        return "\"" + Integer.toHexString(String.valueOf(request.getPath()).hashCode()) + "\"";
+    }
+
+    // Base asked for: "/latest?base=EUR" for Frankfurter, "/eur.json" for Free Currency API
+    private String base(RecordedRequest request) {
+        if (format == Format.FRANKFURTER) {
+            String base = request.getRequestUrl() != null ? request.getRequestUrl().queryParameter("base") : null;
+            return base != null && request.getRequestUrl().encodedPath().equals("/latest") ? base.toUpperCase(Locale.ROOT) : null;
+        }
+        String path = request.getPath();
+        return path != null && path.endsWith(".json")
+            ? path.substring(path.lastIndexOf('/') + 1, path.length() - ".json".length()).toUpperCase(Locale.ROOT)
+            : null;
+    }
+
+    private String body(String base) {
+        BigDecimal basePerEur = EUR_RATES.get(base);
+        StringBuilder rates = new StringBuilder();
+        EUR_RATES.forEach((code, perEur) -> {
+            if (!code.equals(base)) {
+                String symbol = format == Format.FRANKFURTER ? code : code.toLowerCase(Locale.ROOT);
+                BigDecimal rate = perEur.divide(basePerEur, 8, RoundingMode.HALF_UP).stripTrailingZeros();
+                rates.append('"').append(symbol).append("\":").append(rate.toPlainString()).append(',');
+            }
+        });
+        rates.setLength(rates.length() - 1);
+        return format == Format.FRANKFURTER
+            ? "{\"amount\":1.0,\"base\":\"" + base + "\",\"date\":\"2024-11-29\",\"rates\":{" + rates + "}}"
+            : "{\"date\":\"2024-11-29\",\"" + base.toLowerCase(Locale.ROOT) + "\":{" + rates + "}}";
+    }
+}
@@ -0,0 +1,46 @@
+package com.lili.springboot.webapp.exchange_app.config;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Per-client rate limit in front of the rate and conversion endpoints.
+ *
+ * Every request costs its client one token of the ClientRateLimiter. A request without a token is
+ * answered with 429 and a Retry-After before it reaches the controller, so one client can't use up
+ * the cache and the providers for everyone else. Batch requests are charged by their controller
+ * instead, one token per query, since the number of queries is only known from the body.
+ */
+@Component
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+    private final ClientRateLimiter rateLimiter;
+
+    public AdmissionInterceptor(ClientRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // The async dispatch resuming a reactive handler was admitted already
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
+        Duration wait = rateLimiter.tryAcquire(request, 1);
+        if (wait.isZero()) {
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, ClientRateLimiter.retryAfterSeconds(wait));
+        return false;
+    }
+}
@@ -1,15 +1,28 @@
 package com.lili.springboot.webapp.exchange_app.config;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties.ExecutionMode;
 
 /**
  * General application configuration
  */
 @Configuration
+@EnableConfigurationProperties(ExchangeRateProperties.class)
+@EnableScheduling
 public class ApplicationConfig {
     /**
      * Configure Jackson ObjectMapper for JSON processing
@@ -18,13 +31,42 @@ public class ApplicationConfig {
     @Bean
     public ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
-        
+
         // Configure to handle different JSON naming conventions
         mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
-        
+
         // Don't fail on unknown properties (APIs might return extra fields)
         mapper.configure(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        
+
+        // Dates (historical rates) as ISO strings like "2024-01-02"
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
         return mapper;
     }
+
+    /**
+     * Executor used by ExchangeRateService for clients that only implement the blocking contract
+     * Each call blocks its thread until the response arrives, so in platform mode the pool grows on demand
+     * and in virtual mode every call gets its own virtual thread
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService providerExecutor(ExchangeRateProperties properties) {
+        if (properties.getExecutionMode() == ExecutionMode.VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("provider-fetch-", 0).factory());
+        }
+        return Executors.newCachedThreadPool(
+            Thread.ofPlatform().name("provider-fetch-", 0).daemon(true).factory());
+    }
+
+    /**
+     * In virtual mode Tomcat hands every request to a new virtual thread instead of its worker pool,
+     * so blocked requests no longer count against server.tomcat.threads.max
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.exchange-rate", name = "execution-mode", havingValue = "virtual")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(new VirtualThreadExecutor("tomcat-handler-"));
+    }
 }
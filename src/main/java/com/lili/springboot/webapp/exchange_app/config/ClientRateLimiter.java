@@ -0,0 +1,85 @@
+package com.lili.springboot.webapp.exchange_app.config;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lili.springboot.webapp.exchange_app.service.MetricsService;
+import com.lili.springboot.webapp.exchange_app.service.TokenBucket;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Token bucket of every client, refilling at client-rate-limit per second up to client-burst.
+ *
+ * Clients are told apart by their remote address. Only when client-id-header is set, because a gateway
+ * in front of the service writes that header, is its value used instead: a client-supplied identity
+ * could otherwise be changed on every request to get a fresh bucket each time. Buckets of clients
+ * not seen for a full refill are dropped, at most max-tracked-clients are kept.
+ */
+@Component
+public class ClientRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientRateLimiter.class);
+
+    private final ExchangeRateProperties properties;
+    private final MetricsService metricsService;
+    private final Cache<String, TokenBucket> buckets;
+
+    public ClientRateLimiter(ExchangeRateProperties properties, MetricsService metricsService) {
+        this.properties = properties;
+        this.metricsService = metricsService;
+        // An idle bucket is full again after one refill, forgetting it then changes nothing
+        Duration idleExpiry = properties.getClientRateLimit() > 0
+            ? Duration.ofNanos(newBucket(System.nanoTime()).refillNanos())
+            : Duration.ofMinutes(1);
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(properties.getMaxTrackedClients())
+            .expireAfterAccess(idleExpiry)
+            .build();
+    }
+
+    /**
+     * Charges the request's client the given number of tokens. Returns Duration.ZERO if they were
+     * taken, otherwise how long the client should wait; the rejection is counted then.
+     */
+    public Duration tryAcquire(HttpServletRequest request, int tokens) {
+        if (properties.getClientRateLimit() <= 0) {
+            return Duration.ZERO;
+        }
+
+        String client = clientId(request);
+        long now = System.nanoTime();
+        long waitNanos = buckets.get(client, key -> newBucket(now)).tryAcquire(now, tokens);
+        if (waitNanos == 0) {
+            return Duration.ZERO;
+        }
+        logger.debug("Rate limit exceeded for client {}", client);
+        metricsService.incrementRateLimitedRequests();
+        return Duration.ofNanos(waitNanos);
+    }
+
+    // Value of a Retry-After header: the wait in whole seconds, at least one
+    public static String retryAfterSeconds(Duration wait) {
+        return Long.toString(Math.max(1, (wait.toMillis() + 999) / 1000));
+    }
+
+    private String clientId(HttpServletRequest request) {
+        String header = properties.getClientIdHeader();
+        if (header != null && !header.isBlank()) {
+            String id = request.getHeader(header);
+            if (id != null && !id.isBlank()) {
+                return id.trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private TokenBucket newBucket(long nowNanos) {
+        return new TokenBucket(properties.getClientRateLimit(), properties.getClientBurst(), nowNanos);
+    }
+}
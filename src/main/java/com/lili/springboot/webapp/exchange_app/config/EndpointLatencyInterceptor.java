@@ -0,0 +1,46 @@
+package com.lili.springboot.webapp.exchange_app.config;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.lili.springboot.webapp.exchange_app.service.MetricsService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Records how long each controller takes to handle a request, per method and mapping pattern.
+ *
+ * Reactive and streaming handlers complete on a later async dispatch of the same request; the
+ * start time is kept in a request attribute across dispatches, so the recorded time runs until
+ * the response is complete rather than until the handler method returned.
+ */
+@Component
+public class EndpointLatencyInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = EndpointLatencyInterceptor.class.getName() + ".start";
+
+    private final MetricsService metricsService;
+
+    public EndpointLatencyInterceptor(MetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (start instanceof Long startNanos && pattern != null) {
+            metricsService.recordEndpointLatency(request.getMethod() + " " + pattern, System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.lili.springboot.webapp.exchange_app.config;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.convert.DurationUnit;
+
+/**
+ * Typed view of the custom "app.exchange-rate" properties in application.yml
+ */
+@ConfigurationProperties(prefix = "app.exchange-rate")
+public class ExchangeRateProperties {
+
+    /**
+     * How a cache miss queries the configured providers
+     */
+    public enum FetchMode {
+        /** One provider after the other, miss latency is the sum of all providers */
+        SEQUENTIAL,
+        /** All providers at once, each one bounded by its own deadline */
+        PARALLEL
+    }
+
+    /**
+     * Which kind of threads run servlet requests and blocking provider calls
+     */
+    public enum ExecutionMode {
+        /** Tomcat's bounded worker pool and a cached pool of platform threads for providers */
+        PLATFORM,
+        /** A new virtual thread per servlet request and per blocking provider call */
+        VIRTUAL
+    }
+
+    /**
+     * HTTP transport of one provider: its own Reactor Netty connection pool and client settings
+     */
+    public static class Transport {
+
+        // Connections kept open to the provider, requests beyond them wait for a free one
+        private int maxConnections = 50;
+
+        // Requests allowed to wait for a connection, further ones fail at once
+        private int pendingAcquireMaxCount = 200;
+
+        // Longest wait for a free connection
+        @DurationUnit(ChronoUnit.MILLIS)
+        private Duration pendingAcquireTimeout = Duration.ofMillis(1000);
+
+        // Idle connections are closed after this, before the provider or a proxy drops them silently
+        @DurationUnit(ChronoUnit.SECONDS)
+        private Duration maxIdleTime = Duration.ofSeconds(20);
+
+        // Connections are replaced after this, so DNS changes of the provider are picked up
+        @DurationUnit(ChronoUnit.SECONDS)
+        private Duration maxLifeTime = Duration.ofSeconds(300);
+
+        // How often idle and expired connections are evicted in the background
+        @DurationUnit(ChronoUnit.SECONDS)
+        private Duration evictionInterval = Duration.ofSeconds(30);
+
+        @DurationUnit(ChronoUnit.MILLIS)
+        private Duration connectTimeout = Duration.ofMillis(2000);
+
+        // Longest wait for the response headers, unset means the provider's timeout
+        @DurationUnit(ChronoUnit.MILLIS)
+        private Duration responseTimeout;
+
+        // Ask for gzip responses and decompress them
+        private boolean compression = true;
+
+        // Negotiate HTTP/2 on https providers, one connection then carries many requests
+        private boolean http2 = false;
+
+        public int getMaxConnections() { return maxConnections; }
+        public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+
+        public int getPendingAcquireMaxCount() { return pendingAcquireMaxCount; }
+        public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) { this.pendingAcquireMaxCount = pendingAcquireMaxCount; }
+
+        public Duration getPendingAcquireTimeout() { return pendingAcquireTimeout; }
+        public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) { this.pendingAcquireTimeout = pendingAcquireTimeout; }
+
+        public Duration getMaxIdleTime() { return maxIdleTime; }
+        public void setMaxIdleTime(Duration maxIdleTime) { this.maxIdleTime = maxIdleTime; }
+
+        public Duration getMaxLifeTime() { return maxLifeTime; }
+        public void setMaxLifeTime(Duration maxLifeTime) { this.maxLifeTime = maxLifeTime; }
+
+        public Duration getEvictionInterval() { return evictionInterval; }
+        public void setEvictionInterval(Duration evictionInterval) { this.evictionInterval = evictionInterval; }
+
+        public Duration getConnectTimeout() { return connectTimeout; }
+        public void setConnectTimeout(Duration connectTimeout) { this.connectTimeout = connectTimeout; }
+
+        public Duration getResponseTimeout() { return responseTimeout; }
+        public void setResponseTimeout(Duration responseTimeout) { this.responseTimeout = responseTimeout; }
+
+        public boolean isCompression() { return compression; }
+        public void setCompression(boolean compression) { this.compression = compression; }
+
+        public boolean isHttp2() { return http2; }
+        public void setHttp2(boolean http2) { this.http2 = http2; }
+    }
+
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration cacheTtl = Duration.ofSeconds(300);
+
+    // How long past cache-ttl a table is still served while it is being refreshed, or when refreshing it fails
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration staleTtl = Duration.ofSeconds(3600);
+
+    // Hot tables are refreshed in the background this long before their TTL runs out
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration refreshAhead = Duration.ofSeconds(30);
+
+    // Requests served from a table since it was fetched that make its base hot enough to refresh ahead
+    private int refreshMinHits = 2;
+
+    // How often the refresh-ahead scheduler looks for tables about to expire
+    @DurationUnit(ChronoUnit.MILLIS)
+    private Duration refreshCheckInterval = Duration.ofMillis(5000);
+
+    // Minimum time between two background refreshes of the same base, so an outage isn't hammered
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration refreshRetryInterval = Duration.ofSeconds(30);
+
+    // Upper bound on the number of cached rates across all base tables, the least valuable tables are evicted beyond it
+    private long cacheMaxRates = 100_000;
+
+    // Responses remembered per distinct base and symbol set, rebuilt whenever their table is replaced
+    private long viewCacheSize = 10_000;
+
+    // Most queries accepted by one POST /exchangeRates/batch request
+    private int batchMaxQueries = 100;
+
+    // Smallest response body in bytes that is also kept gzipped for clients accepting gzip, -1 never compresses
+    private int responseGzipMinSize = 1024;
+
+    // File the cached tables are periodically written to and restored from at startup, empty disables snapshots
+    private String cacheSnapshotFile = "data/rate-cache.snapshot";
+
+    // How often the cache snapshot is rewritten, when the cache changed
+    @DurationUnit(ChronoUnit.MILLIS)
+    private Duration cacheSnapshotInterval = Duration.ofSeconds(60);
+
+    // Directory of the historical rate store, one sub-directory of yearly segment files per base
+    private String historyDirectory = "data/history";
+
+    // Bases whose daily history is kept, other bases are derived from the pivot; empty means the pivot only
+    private List<String> historyBases = new ArrayList<>();
+
+    // Days of history fetched from Frankfurter when a base has none stored yet, 0 disables backfilling
+    private int historyBackfillDays = 0;
+
+    // How often the latest published days are appended to the store
+    @DurationUnit(ChronoUnit.MILLIS)
+    private Duration historyBackfillInterval = Duration.ofHours(6);
+
+    // Longest date range served by one history request
+    private int historyMaxRangeDays = 366;
+
+    @DurationUnit(ChronoUnit.MILLIS)
+    private Duration timeout = Duration.ofMillis(5000);
+
+    private int maxRetries = 3;
+
+    private FetchMode fetchMode = FetchMode.PARALLEL;
+
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+    // Fetch only the pivot table and derive every other base from it
+    private boolean triangulate = true;
+
+    private String pivotCurrency = "EUR";
+
+    // Let a fresh table fetched directly for a base override the rates derived from the pivot
+    private boolean preferDirectRates = false;
+
+    // Latest calls per provider the circuit breaker computes its failure and slow call rates over
+    private int breakerWindowSize = 20;
+
+    // Calls a breaker needs in its window before it may open
+    private int breakerMinimumCalls = 10;
+
+    // Percentage of failed (error or timeout) calls that opens a breaker
+    private int breakerFailureRateThreshold = 50;
+
+    // Percentage of slow calls that opens a breaker
+    private int breakerSlowCallRateThreshold = 80;
+
+    // A successful call taking this long or longer counts as slow
+    @DurationUnit(ChronoUnit.MILLIS)
+    private Duration breakerSlowCallDuration = Duration.ofMillis(2000);
+
+    // How long an open breaker rejects calls before letting probes through
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration breakerOpenDuration = Duration.ofSeconds(30);
+
+    // Probes a half-open breaker lets through, all must succeed to close it
+    private int breakerHalfOpenCalls = 3;
+
+    // Calls in flight per provider, further calls skip the provider instead of queueing behind it
+    private int providerMaxConcurrentCalls = 20;
+
+    // Upstream fetches (misses and background refreshes) running at once; beyond it misses get a 429
+    // and refreshes are postponed while the stale table keeps being served. 0 means no limit
+    private int maxConcurrentMisses = 32;
+
+    // Retry-After sent with a 429 for a shed miss
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration overloadRetryAfter = Duration.ofSeconds(1);
+
+    // Sustained requests per second allowed to each client on /exchangeRates and /convert (a batch costs
+    // one per query), 0 disables the limit
+    private double clientRateLimit = 50;
+
+    // Requests a client may send at once after being idle, on top of the sustained rate
+    private int clientBurst = 100;
+
+    // Header identifying the client, only to be set when a trusted gateway writes it; empty means
+    // clients are told apart by remote address, since clients could otherwise pick their own identity
+    private String clientIdHeader = "";
+
+    // Most clients whose token buckets are tracked, the least recently seen are forgotten beyond it
+    private long maxTrackedClients = 100_000;
+
+    // Longest /convert row in characters; a longer row is skipped with an error instead of being buffered whole
+    private int conversionMaxLineLength = 4096;
+
+    // Significant decimal digits kept by the latency histograms, more digits cost more memory per histogram
+    private int latencyPrecision = 2;
+
+    // Rolling window the latency percentiles are computed over
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration latencyWindow = Duration.ofSeconds(60);
+
+    // Histograms a latency window rotates through, the window slides forward by latency-window / buffers
+    private int latencyWindowBuffers = 3;
+
+    // Per-provider deadlines keyed by ExchangeRateApiClient.getApiName(), falling back to timeout
+    private Map<String, Duration> providerTimeouts = new HashMap<>();
+
+    public Duration getProviderTimeout(String apiName) {
+        return providerTimeouts.getOrDefault(apiName, timeout);
+    }
+
+    // Base URL of each provider keyed by ExchangeRateApiClient.getApiName(), overridable to point them at local stubs
+    private Map<String, String> providerBaseUrls = new HashMap<>(Map.of(
+        "frankfurter", "https://api.frankfurter.app",
+        "freeCurrencyRates", "https://cdn.jsdelivr.net/npm/@fawazahmed0/currency-api@latest/v1/currencies"));
+
+    public String getProviderBaseUrl(String apiName) {
+        return providerBaseUrls.get(apiName);
+    }
+
+    // Transport settings of every provider without an entry in provider-transports
+    private Transport providerTransport = new Transport();
+
+    // Per-provider transports keyed by ExchangeRateApiClient.getApiName(), unset fields take the built-in defaults
+    private Map<String, Transport> providerTransports = new HashMap<>();
+
+    public Transport getProviderTransport(String apiName) {
+        return providerTransports.getOrDefault(apiName, providerTransport);
+    }
+
+    // Getters and setters
+    public Duration getCacheTtl() { return cacheTtl; }
+    public void setCacheTtl(Duration cacheTtl) { this.cacheTtl = cacheTtl; }
+
+    public Duration getStaleTtl() { return staleTtl; }
+    public void setStaleTtl(Duration staleTtl) { this.staleTtl = staleTtl; }
+
+    public Duration getRefreshAhead() { return refreshAhead; }
+    public void setRefreshAhead(Duration refreshAhead) { this.refreshAhead = refreshAhead; }
+
+    public int getRefreshMinHits() { return refreshMinHits; }
+    public void setRefreshMinHits(int refreshMinHits) { this.refreshMinHits = refreshMinHits; }
+
+    public Duration getRefreshCheckInterval() { return refreshCheckInterval; }
+    public void setRefreshCheckInterval(Duration refreshCheckInterval) { this.refreshCheckInterval = refreshCheckInterval; }
+
+    public Duration getRefreshRetryInterval() { return refreshRetryInterval; }
+    public void setRefreshRetryInterval(Duration refreshRetryInterval) { this.refreshRetryInterval = refreshRetryInterval; }
+
+    public long getCacheMaxRates() { return cacheMaxRates; }
+    public void setCacheMaxRates(long cacheMaxRates) { this.cacheMaxRates = cacheMaxRates; }
+
+    public long getViewCacheSize() { return viewCacheSize; }
+    public void setViewCacheSize(long viewCacheSize) { this.viewCacheSize = viewCacheSize; }
+
+    public int getBatchMaxQueries() { return batchMaxQueries; }
+    public void setBatchMaxQueries(int batchMaxQueries) { this.batchMaxQueries = batchMaxQueries; }
+
+    public int getResponseGzipMinSize() { return responseGzipMinSize; }
+    public void setResponseGzipMinSize(int responseGzipMinSize) { this.responseGzipMinSize = responseGzipMinSize; }
+
+    public String getCacheSnapshotFile() { return cacheSnapshotFile; }
+    public void setCacheSnapshotFile(String cacheSnapshotFile) { this.cacheSnapshotFile = cacheSnapshotFile; }
+
+    public Duration getCacheSnapshotInterval() { return cacheSnapshotInterval; }
+    public void setCacheSnapshotInterval(Duration cacheSnapshotInterval) { this.cacheSnapshotInterval = cacheSnapshotInterval; }
+
+    public String getHistoryDirectory() { return historyDirectory; }
+    public void setHistoryDirectory(String historyDirectory) { this.historyDirectory = historyDirectory; }
+
+    public List<String> getHistoryBases() { return historyBases; }
+    public void setHistoryBases(List<String> historyBases) { this.historyBases = historyBases; }
+
+    public int getHistoryBackfillDays() { return historyBackfillDays; }
+    public void setHistoryBackfillDays(int historyBackfillDays) { this.historyBackfillDays = historyBackfillDays; }
+
+    public Duration getHistoryBackfillInterval() { return historyBackfillInterval; }
+    public void setHistoryBackfillInterval(Duration historyBackfillInterval) { this.historyBackfillInterval = historyBackfillInterval; }
+
+    public int getHistoryMaxRangeDays() { return historyMaxRangeDays; }
+    public void setHistoryMaxRangeDays(int historyMaxRangeDays) { this.historyMaxRangeDays = historyMaxRangeDays; }
+
+    public Duration getTimeout() { return timeout; }
+    public void setTimeout(Duration timeout) { this.timeout = timeout; }
+
+    public int getMaxRetries() { return maxRetries; }
+    public void setMaxRetries(int maxRetries) { this.maxRetries = maxRetries; }
+
+    public FetchMode getFetchMode() { return fetchMode; }
+    public void setFetchMode(FetchMode fetchMode) { this.fetchMode = fetchMode; }
+
+    public ExecutionMode getExecutionMode() { return executionMode; }
+    public void setExecutionMode(ExecutionMode executionMode) { this.executionMode = executionMode; }
+
+    public boolean isTriangulate() { return triangulate; }
+    public void setTriangulate(boolean triangulate) { this.triangulate = triangulate; }
+
+    public String getPivotCurrency() { return pivotCurrency; }
+    public void setPivotCurrency(String pivotCurrency) { this.pivotCurrency = pivotCurrency.toUpperCase(); }
+
+    public boolean isPreferDirectRates() { return preferDirectRates; }
+    public void setPreferDirectRates(boolean preferDirectRates) { this.preferDirectRates = preferDirectRates; }
+
+    public int getBreakerWindowSize() { return breakerWindowSize; }
+    public void setBreakerWindowSize(int breakerWindowSize) { this.breakerWindowSize = breakerWindowSize; }
+
+    public int getBreakerMinimumCalls() { return breakerMinimumCalls; }
+    public void setBreakerMinimumCalls(int breakerMinimumCalls) { this.breakerMinimumCalls = breakerMinimumCalls; }
+
+    public int getBreakerFailureRateThreshold() { return breakerFailureRateThreshold; }
+    public void setBreakerFailureRateThreshold(int breakerFailureRateThreshold) { this.breakerFailureRateThreshold = breakerFailureRateThreshold; }
+
+    public int getBreakerSlowCallRateThreshold() { return breakerSlowCallRateThreshold; }
+    public void setBreakerSlowCallRateThreshold(int breakerSlowCallRateThreshold) { this.breakerSlowCallRateThreshold = breakerSlowCallRateThreshold; }
+
+    public Duration getBreakerSlowCallDuration() { return breakerSlowCallDuration; }
+    public void setBreakerSlowCallDuration(Duration breakerSlowCallDuration) { this.breakerSlowCallDuration = breakerSlowCallDuration; }
+
+    public Duration getBreakerOpenDuration() { return breakerOpenDuration; }
+    public void setBreakerOpenDuration(Duration breakerOpenDuration) { this.breakerOpenDuration = breakerOpenDuration; }
+
+    public int getBreakerHalfOpenCalls() { return breakerHalfOpenCalls; }
+    public void setBreakerHalfOpenCalls(int breakerHalfOpenCalls) { this.breakerHalfOpenCalls = breakerHalfOpenCalls; }
+
+    public int getProviderMaxConcurrentCalls() { return providerMaxConcurrentCalls; }
+    public void setProviderMaxConcurrentCalls(int providerMaxConcurrentCalls) { this.providerMaxConcurrentCalls = providerMaxConcurrentCalls; }
+
+    public int getMaxConcurrentMisses() { return maxConcurrentMisses; }
+    public void setMaxConcurrentMisses(int maxConcurrentMisses) { this.maxConcurrentMisses = maxConcurrentMisses; }
+
+    public Duration getOverloadRetryAfter() { return overloadRetryAfter; }
+    public void setOverloadRetryAfter(Duration overloadRetryAfter) { this.overloadRetryAfter = overloadRetryAfter; }
+
+    public double getClientRateLimit() { return clientRateLimit; }
+    public void setClientRateLimit(double clientRateLimit) { this.clientRateLimit = clientRateLimit; }
+
+    public int getClientBurst() { return clientBurst; }
+    public void setClientBurst(int clientBurst) { this.clientBurst = clientBurst; }
+
+    public String getClientIdHeader() { return clientIdHeader; }
+    public void setClientIdHeader(String clientIdHeader) { this.clientIdHeader = clientIdHeader; }
+
+    public long getMaxTrackedClients() { return maxTrackedClients; }
+    public void setMaxTrackedClients(long maxTrackedClients) { this.maxTrackedClients = maxTrackedClients; }
+
+    public int getConversionMaxLineLength() { return conversionMaxLineLength; }
+    public void setConversionMaxLineLength(int conversionMaxLineLength) { this.conversionMaxLineLength = conversionMaxLineLength; }
+
+    public int getLatencyPrecision() { return latencyPrecision; }
+    public void setLatencyPrecision(int latencyPrecision) { this.latencyPrecision = latencyPrecision; }
+
+    public Duration getLatencyWindow() { return latencyWindow; }
+    public void setLatencyWindow(Duration latencyWindow) { this.latencyWindow = latencyWindow; }
+
+    public int getLatencyWindowBuffers() { return latencyWindowBuffers; }
+    public void setLatencyWindowBuffers(int latencyWindowBuffers) { this.latencyWindowBuffers = latencyWindowBuffers; }
+
+    public Map<String, Duration> getProviderTimeouts() { return providerTimeouts; }
+    public void setProviderTimeouts(Map<String, Duration> providerTimeouts) { this.providerTimeouts = providerTimeouts; }
+
+    public Map<String, String> getProviderBaseUrls() { return providerBaseUrls; }
+    public void setProviderBaseUrls(Map<String, String> providerBaseUrls) { this.providerBaseUrls = providerBaseUrls; }
+
+    public Transport getProviderTransport() { return providerTransport; }
+    public void setProviderTransport(Transport providerTransport) { this.providerTransport = providerTransport; }
+
+    public Map<String, Transport> getProviderTransports() { return providerTransports; }
+    public void setProviderTransports(Map<String, Transport> providerTransports) { this.providerTransports = providerTransports; }
+
+}
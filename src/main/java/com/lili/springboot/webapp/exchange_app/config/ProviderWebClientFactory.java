@@ -0,0 +1,81 @@
+package com.lili.springboot.webapp.exchange_app.config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Builds the WebClient of each provider on its own Reactor Netty connection pool
+ *
+ * With the shared default pool every provider competed for the same connections, waited for one without
+ * a bound and had no response timeout of its own. Here each provider gets the pool size, idle eviction,
+ * timeouts, compression and protocol set under app.exchange-rate.provider-transport(s).
+ * Pool metrics are published as reactor.netty.connection.provider.* with the pool name "provider-{apiName}".
+ */
+@Component
+public class ProviderWebClientFactory implements DisposableBean {
+
+    private final WebClient.Builder webClientBuilder;
+    private final ExchangeRateProperties properties;
+    private final List<ConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
+
+    public ProviderWebClientFactory(WebClient.Builder webClientBuilder, ExchangeRateProperties properties) {
+        this.webClientBuilder = webClientBuilder;
+        this.properties = properties;
+    }
+
+    /**
+     * A builder for the given provider, with its base URL and transport already set.
+     * The shared builder is cloned, so its codec settings apply but it is never modified.
+     */
+    public WebClient.Builder builder(String apiName) {
+        return webClientBuilder.clone()
+            .baseUrl(properties.getProviderBaseUrl(apiName))
+            .clientConnector(new ReactorClientHttpConnector(httpClient(apiName)));
+    }
+
+    HttpClient httpClient(String apiName) {
+        ExchangeRateProperties.Transport transport = properties.getProviderTransport(apiName);
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("provider-" + apiName)
+            .maxConnections(transport.getMaxConnections())
+            .pendingAcquireMaxCount(transport.getPendingAcquireMaxCount())
+            .pendingAcquireTimeout(transport.getPendingAcquireTimeout())
+            .maxIdleTime(transport.getMaxIdleTime())
+            .maxLifeTime(transport.getMaxLifeTime())
+            .evictInBackground(transport.getEvictionInterval())
+            .metrics(true)
+            .build();
+        connectionProviders.add(connectionProvider);
+
+        Duration responseTimeout = transport.getResponseTimeout() != null
+            ? transport.getResponseTimeout()
+            : properties.getProviderTimeout(apiName);
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) transport.getConnectTimeout().toMillis())
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            .responseTimeout(responseTimeout)
+            .compress(transport.isCompression());
+
+        // HTTP/2 is negotiated through TLS (ALPN), plain http providers stay on HTTP/1.1
+        String baseUrl = properties.getProviderBaseUrl(apiName);
+        if (transport.isHttp2() && baseUrl != null && baseUrl.startsWith("https:")) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+        return httpClient;
+    }
+
+    @Override
+    public void destroy() {
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
+}
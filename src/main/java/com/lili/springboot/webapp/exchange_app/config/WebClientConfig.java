@@ -20,6 +20,8 @@ public class WebClientConfig {
      * - Non-blocking/reactive
      * - Better error handling
      * - More modern and actively maintained
+     *
+     * ProviderWebClientFactory clones it for each provider and adds the provider's own connection pool
      */
     @Bean
     public WebClient.Builder webClientBuilder() {
@@ -0,0 +1,29 @@
+package com.lili.springboot.webapp.exchange_app.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Spring MVC configuration: request interceptors
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final EndpointLatencyInterceptor endpointLatencyInterceptor;
+    private final AdmissionInterceptor admissionInterceptor;
+
+    public WebMvcConfig(EndpointLatencyInterceptor endpointLatencyInterceptor, AdmissionInterceptor admissionInterceptor) {
+        this.endpointLatencyInterceptor = endpointLatencyInterceptor;
+        this.admissionInterceptor = admissionInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(endpointLatencyInterceptor);
+        // Rejected requests still get their latency recorded
+        registry.addInterceptor(admissionInterceptor)
+            .addPathPatterns("/exchangeRates/**", "/convert/**")
+            .excludePathPatterns("/exchangeRates/batch");
+    }
+}
@@ -0,0 +1,112 @@
+package com.lili.springboot.webapp.exchange_app.controller;
+
+import com.lili.springboot.webapp.exchange_app.config.ClientRateLimiter;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.BatchQuery;
+import com.lili.springboot.webapp.exchange_app.model.BatchRequest;
+import com.lili.springboot.webapp.exchange_app.model.BatchResponse;
+import com.lili.springboot.webapp.exchange_app.model.BatchResult;
+import com.lili.springboot.webapp.exchange_app.model.CacheKey;
+import com.lili.springboot.webapp.exchange_app.service.ExchangeRateService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/exchangeRates")
+public class BatchExchangeRateController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BatchExchangeRateController.class);
+    
+    private final ExchangeRateService exchangeRateService;
+    private final ExchangeRateProperties properties;
+    private final ClientRateLimiter rateLimiter;
+    
+    public BatchExchangeRateController(ExchangeRateService exchangeRateService, ExchangeRateProperties properties,
+                                       ClientRateLimiter rateLimiter) {
+        this.exchangeRateService = exchangeRateService;
+        this.properties = properties;
+        this.rateLimiter = rateLimiter;
+    }
+    
+    /**
+     * Answers many (base, symbols) queries in one round trip, e.g.
+     * {"queries": [{"base": "EUR", "symbols": "USD,GBP"}, {"base": "USD", "symbols": "JPY"}]}
+     * 
+     * Results come back in the order of the queries. An invalid or failed query gets an "error"
+     * instead of "rates" and doesn't fail the rest of the batch.
+     * A batch costs its client one rate limit token per query, as many as the separate requests would.
+     */
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<BatchResponse>> getExchangeRatesBatch(@RequestBody BatchRequest request,
+                                                                     HttpServletRequest servletRequest) {
+        List<BatchQuery> queries = request.getQueries();
+        
+        // Validate the batch as a whole
+        if (queries == null || queries.isEmpty()) {
+            logger.warn("Batch request without queries");
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        
+        if (queries.size() > properties.getBatchMaxQueries()) {
+            logger.warn("Batch request with {} queries, at most {} allowed", queries.size(), properties.getBatchMaxQueries());
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        
+        Duration wait = rateLimiter.tryAcquire(servletRequest, queries.size());
+        if (!wait.isZero()) {
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, ClientRateLimiter.retryAfterSeconds(wait))
+                .build());
+        }
+        
+        logger.debug("Received batch request with {} queries", queries.size());
+        
+        // Validate every query on its own, only the valid ones go to the service
+        BatchResult[] results = new BatchResult[queries.size()];
+        List<CacheKey> cacheKeys = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            BatchQuery query = queries.get(i);
+            String base = query == null ? null : query.getBase();
+            String symbols = query == null ? null : query.getSymbols();
+            
+            if (base == null || base.trim().isEmpty()) {
+                results[i] = BatchResult.failure(base, "Invalid base currency");
+                continue;
+            }
+            
+            CacheKey cacheKey = symbols == null ? null : CacheKey.parse(base, symbols);
+            if (cacheKey == null || !cacheKey.hasSymbols()) {
+                results[i] = BatchResult.failure(base, "Invalid symbols parameter");
+                continue;
+            }
+            
+            cacheKeys.add(cacheKey);
+            positions.add(i);
+        }
+        
+        return exchangeRateService.getExchangeRatesBatch(cacheKeys)
+            .map(found -> {
+                for (int i = 0; i < found.size(); i++) {
+                    results[positions.get(i)] = found.get(i);
+                }
+                return ResponseEntity.ok(new BatchResponse(Arrays.asList(results)));
+            })
+            .onErrorResume(e -> {
+                logger.error("Error processing batch exchange rate request", e);
+                return Mono.just(ResponseEntity.internalServerError().build());
+            });
+    }
+}
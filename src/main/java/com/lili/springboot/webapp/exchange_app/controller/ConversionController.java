@@ -0,0 +1,76 @@
+package com.lili.springboot.webapp.exchange_app.controller;
+
+import com.lili.springboot.webapp.exchange_app.service.BulkConversionService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@RequestMapping("/convert")
+public class ConversionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversionController.class);
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final BulkConversionService bulkConversionService;
+
+    public ConversionController(BulkConversionService bulkConversionService) {
+        this.bulkConversionService = bulkConversionService;
+    }
+
+    /**
+     * Converts a CSV body of "amount,from,to" rows, e.g. "100,EUR,USD", into
+     * "amount,from,to,rate,converted,error" rows. The body is read while the response is written,
+     * so neither is held in memory.
+     */
+    @PostMapping(consumes = TEXT_CSV_VALUE, produces = TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> convertCsv(HttpServletRequest request) throws IOException {
+        Reader input = reader(request);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(TEXT_CSV_VALUE))
+            .body(output -> {
+                Writer writer = writer(output);
+                long rows = bulkConversionService.convertCsv(input, writer);
+                logger.debug("Streamed {} converted CSV rows", rows);
+            });
+    }
+
+    /**
+     * Converts an NDJSON body of {"amount": 100, "from": "EUR", "to": "USD"} lines into one
+     * converted object per line, with "rate" and "converted" or an "error".
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> convertNdjson(HttpServletRequest request) throws IOException {
+        Reader input = reader(request);
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(output -> {
+                Writer writer = writer(output);
+                long rows = bulkConversionService.convertNdjson(input, writer);
+                logger.debug("Streamed {} converted NDJSON rows", rows);
+            });
+    }
+
+    // Not buffered here, the conversion reads it through its own line buffer
+    private Reader reader(HttpServletRequest request) throws IOException {
+        return new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8);
+    }
+
+    private Writer writer(OutputStream output) {
+        return new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    }
+}
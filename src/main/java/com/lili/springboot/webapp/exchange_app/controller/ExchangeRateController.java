@@ -1,15 +1,36 @@
 package com.lili.springboot.webapp.exchange_app.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lili.springboot.webapp.exchange_app.config.ClientRateLimiter;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.CacheKey;
 import com.lili.springboot.webapp.exchange_app.model.ExchangeRateResponse;
+import com.lili.springboot.webapp.exchange_app.model.HistoricalRatesResponse;
 import com.lili.springboot.webapp.exchange_app.service.ExchangeRateService;
+import com.lili.springboot.webapp.exchange_app.service.HistoricalRateService;
+import com.lili.springboot.webapp.exchange_app.service.OverloadedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Arrays;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/exchangeRates")
@@ -18,55 +39,220 @@ public class ExchangeRateController {
     private static final Logger logger = LoggerFactory.getLogger(ExchangeRateController.class);
     
     private final ExchangeRateService exchangeRateService;
+    private final HistoricalRateService historicalRateService;
+    private final ExchangeRateProperties properties;
+    private final ObjectMapper objectMapper;
     
-    public ExchangeRateController(ExchangeRateService exchangeRateService) {
+    public ExchangeRateController(ExchangeRateService exchangeRateService, HistoricalRateService historicalRateService,
+                                  ExchangeRateProperties properties, ObjectMapper objectMapper) {
         this.exchangeRateService = exchangeRateService;
+        this.historicalRateService = historicalRateService;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
     }
     
+    /**
+     * Returns a Mono so that Spring MVC releases the servlet thread while a cache miss
+     * waits for the providers, and resumes the request once the rates are available.
+     * With a date (e.g. ?date=2024-01-02) the rates of that day are served from the local history.
+     * Live rates carry an ETag and a Cache-Control max-age up to the end of their table's TTL.
+     * The body is written as bytes: a cached response is encoded once, not on every hit.
+     * A miss shed under load is answered with 429 and Retry-After.
+     */
     @GetMapping("/{baseCurrency}")
-    public ResponseEntity<ExchangeRateResponse> getExchangeRates(
+    public Mono<ResponseEntity<byte[]>> getExchangeRates(
             @PathVariable String baseCurrency,
-            @RequestParam String symbols) {
+            @RequestParam String symbols,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         
-        try {
-            logger.info("Received request for base: {}, symbols: {}", baseCurrency, symbols);
-            
-            // Validate inputs
-            if (baseCurrency == null || baseCurrency.trim().isEmpty()) {
-                logger.warn("Invalid base currency: {}", baseCurrency);
-                return ResponseEntity.badRequest().build();
+        logger.debug("Received request for base: {}, symbols: {}", baseCurrency, symbols);
+        
+        // Validate inputs
+        if (baseCurrency == null || baseCurrency.trim().isEmpty()) {
+            logger.warn("Invalid base currency: {}", baseCurrency);
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        
+        if (symbols == null || symbols.trim().isEmpty()) {
+            logger.warn("Invalid symbols parameter: {}", symbols);
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        
+        // Parse symbols parameter (e.g., "USD,NZD,GBP") straight into the cache key
+        CacheKey cacheKey = CacheKey.parse(baseCurrency, symbols);
+        
+        if (!cacheKey.hasSymbols()) {
+            logger.warn("No valid symbols found in: {}", symbols);
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        
+        if (date != null) {
+            try {
+                ExchangeRateResponse response = historicalRateService.getExchangeRates(cacheKey, date);
+                if (response == null || response.getRates().isEmpty()) {
+                    logger.warn("No historical rates found for base: {}, symbols: {}, date: {}", baseCurrency, symbols, date);
+                    return Mono.just(ResponseEntity.notFound().build());
+                }
+                return Mono.just(encoded(ResponseEntity.ok(), response, acceptsGzip(acceptEncoding)));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Invalid historical request for base: {}, date: {}: {}", baseCurrency, date, e.getMessage());
+                return Mono.just(ResponseEntity.badRequest().build());
+            } catch (RuntimeException e) {
+                logger.error("Error processing historical exchange rate request", e);
+                return Mono.just(ResponseEntity.internalServerError().build());
             }
-            
-            if (symbols == null || symbols.trim().isEmpty()) {
-                logger.warn("Invalid symbols parameter: {}", symbols);
-                return ResponseEntity.badRequest().build();
+        }
+        
+        // Get exchange rates
+        return exchangeRateService.getExchangeRatesReactive(cacheKey)
+            .map(response -> {
+                if (response.getRates().isEmpty()) {
+                    logger.warn("No exchange rates found for base: {}, symbols: {}", baseCurrency, symbols);
+                    return ResponseEntity.notFound().<byte[]>build();
+                }
+                
+                logger.debug("Successfully returned rates for base: {}, symbols: {}", baseCurrency, symbols);
+                // Spring answers a matching If-None-Match with 304 and no body
+                return encoded(ResponseEntity.ok().cacheControl(cacheControl(response)), response, acceptsGzip(acceptEncoding));
+            })
+            .onErrorResume(OverloadedException.class, e -> {
+                // Shed miss: the client retries later instead of queueing behind the running fetches
+                logger.warn("Overloaded, rejecting request for base: {}", baseCurrency);
+                return Mono.just(tooManyRequests(e.getRetryAfter()));
+            })
+            .onErrorResume(e -> {
+                logger.error("Error processing exchange rate request", e);
+                return Mono.just(ResponseEntity.internalServerError().build());
+            });
+    }
+    
+    private static ResponseEntity<byte[]> tooManyRequests(Duration retryAfter) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, ClientRateLimiter.retryAfterSeconds(retryAfter))
+            .build();
+    }
+    
+    /**
+     * The response as JSON bytes, gzipped if the client accepts it and the body is large enough.
+     * Both encodings are kept on the response, which the service reuses for every hit on its table,
+     * so after the first request a hit is written without going through Jackson or the compressor.
+     * The gzipped body is another representation and gets its own ETag.
+     */
+    private ResponseEntity<byte[]> encoded(ResponseEntity.BodyBuilder builder, ExchangeRateResponse response, boolean acceptsGzip) {
+        byte[] json = response.getJson();
+        if (json == null) {
+            try {
+                json = objectMapper.writeValueAsBytes(response);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
             }
-            
-            // Parse symbols parameter (e.g., "USD,NZD,GBP")
-            Set<String> symbolSet = Arrays.stream(symbols.split(","))
-                .map(String::trim)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toSet());
-            
-            if (symbolSet.isEmpty()) {
-                logger.warn("No valid symbols found in: {}", symbols);
-                return ResponseEntity.badRequest().build();
+            response.setJson(json);
+        }
+        
+        builder.contentType(MediaType.APPLICATION_JSON).varyBy(HttpHeaders.ACCEPT_ENCODING);
+        String etag = response.getEtag();
+        int gzipMinSize = properties.getResponseGzipMinSize();
+        if (!acceptsGzip || gzipMinSize < 0 || json.length < gzipMinSize) {
+            return builder.eTag(etag).body(json);
+        }
+        
+        byte[] gzipped = response.getGzippedJson();
+        if (gzipped == null) {
+            gzipped = gzip(json);
+            response.setGzippedJson(gzipped);
+        }
+        return builder.eTag(etag != null ? etag.substring(0, etag.length() - 1) + "-gzip\"" : null)
+            .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+            .body(gzipped);
+    }
+    
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+    
+    // "gzip" or "*" in Accept-Encoding, unless listed with q=0
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0{0,3})?");
             }
-            
-            // Get exchange rates
-            ExchangeRateResponse response = exchangeRateService.getExchangeRates(baseCurrency, symbolSet);
-            
+        }
+        return false;
+    }
+    
+    // Clients may reuse the rates until their table expires, then revalidate with the ETag
+    private CacheControl cacheControl(ExchangeRateResponse response) {
+        if (response.getFreshUntil() == null) {
+            return CacheControl.noCache();
+        }
+        long seconds = Math.max(0, Duration.between(Instant.now(), response.getFreshUntil()).getSeconds());
+        return CacheControl.maxAge(Duration.ofSeconds(seconds)).cachePublic();
+    }
+    
+    /**
+     * Rates of every published day between from and to (inclusive), served from the local history,
+     * e.g. /exchangeRates/EUR/history?symbols=USD&from=2024-01-01&to=2024-01-31
+     */
+    @GetMapping("/{baseCurrency}/history")
+    public ResponseEntity<HistoricalRatesResponse> getHistoricalRates(
+            @PathVariable String baseCurrency,
+            @RequestParam String symbols,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        
+        CacheKey cacheKey = CacheKey.parse(baseCurrency, symbols);
+        if (baseCurrency.trim().isEmpty() || !cacheKey.hasSymbols()) {
+            logger.warn("Invalid history request for base: {}, symbols: {}", baseCurrency, symbols);
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            HistoricalRatesResponse response = historicalRateService.getExchangeRates(cacheKey, from, to);
             if (response.getRates().isEmpty()) {
-                logger.warn("No exchange rates found for base: {}, symbols: {}", baseCurrency, symbols);
+                logger.warn("No historical rates found for base: {} between {} and {}", baseCurrency, from, to);
                 return ResponseEntity.notFound().build();
             }
-            
-            logger.info("Successfully returned rates for base: {}, symbols: {}", baseCurrency, symbols);
             return ResponseEntity.ok(response);
-            
-        } catch (Exception e) {
-            logger.error("Error processing exchange rate request", e);
-            return ResponseEntity.internalServerError().build();
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid history range {}..{}: {}", from, to, e.getMessage());
+            return ResponseEntity.badRequest().build();
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Server-Sent Events replacement for polling: an initial "snapshot" event with every requested
+     * rate, then an "update" event with only the changed rates whenever new upstream data arrives.
+     */
+    @GetMapping(value = "/{baseCurrency}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<ExchangeRateResponse>>> streamExchangeRates(
+            @PathVariable String baseCurrency,
+            @RequestParam String symbols) {
+        
+        CacheKey cacheKey = CacheKey.parse(baseCurrency, symbols);
+        if (baseCurrency.trim().isEmpty() || !cacheKey.hasSymbols()) {
+            logger.warn("Invalid stream request for base: {}, symbols: {}", baseCurrency, symbols);
+            return ResponseEntity.badRequest().build();
+        }
+        
+        logger.debug("Opening rate stream for {}", cacheKey);
+        Flux<ServerSentEvent<ExchangeRateResponse>> events = exchangeRateService.streamExchangeRates(cacheKey)
+            .index()
+            .map(event -> ServerSentEvent.builder(event.getT2())
+                .event(event.getT1() == 0 ? "snapshot" : "update")
+                .build())
+            .doOnCancel(() -> logger.debug("Rate stream for {} closed by client", cacheKey));
+        return ResponseEntity.ok(events);
+    }
+}
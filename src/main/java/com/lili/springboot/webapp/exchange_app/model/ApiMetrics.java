@@ -6,18 +6,20 @@ public class ApiMetrics {
     private long totalRequests;
     private long totalResponses;
     private long totalErrors;
+    private long totalTimeouts;
+    private long totalRejections;
+    // Circuit breaker of the provider: CLOSED, OPEN or HALF_OPEN, with the rates (%) it decides on
+    private String circuitState;
+    private float failureRate;
+    private float slowCallRate;
+    private LatencySummary latency;
+
+    public ApiMetrics() {}
 
     public ApiMetrics(String name) {
         this.name = name;
-        this.totalRequests = 0;
-        this.totalResponses = 0;
-        this.totalErrors = 0;
     }
 
-    public void incrementRequests() { this.totalRequests++; }
-    public void incrementResponses() { this.totalResponses++; }
-    public void incrementErrors() { this.totalErrors++; }
-
     // Getters and setters
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
@@ -30,5 +32,23 @@ public class ApiMetrics {
     
     public long getTotalErrors() { return totalErrors; }
     public void setTotalErrors(long totalErrors) { this.totalErrors = totalErrors; }
+    
+    public long getTotalTimeouts() { return totalTimeouts; }
+    public void setTotalTimeouts(long totalTimeouts) { this.totalTimeouts = totalTimeouts; }
+    
+    public long getTotalRejections() { return totalRejections; }
+    public void setTotalRejections(long totalRejections) { this.totalRejections = totalRejections; }
+    
+    public String getCircuitState() { return circuitState; }
+    public void setCircuitState(String circuitState) { this.circuitState = circuitState; }
+    
+    public float getFailureRate() { return failureRate; }
+    public void setFailureRate(float failureRate) { this.failureRate = failureRate; }
+    
+    public float getSlowCallRate() { return slowCallRate; }
+    public void setSlowCallRate(float slowCallRate) { this.slowCallRate = slowCallRate; }
+    
+    public LatencySummary getLatency() { return latency; }
+    public void setLatency(LatencySummary latency) { this.latency = latency; }
 
 }
@@ -0,0 +1,24 @@
+package com.lili.springboot.webapp.exchange_app.model;
+
+/**
+ * One (base, symbols) query of a batch request, symbols in the same comma separated form as the GET endpoint
+ */
+public class BatchQuery {
+
+    private String base;
+    private String symbols;
+
+    public BatchQuery() {}
+
+    public BatchQuery(String base, String symbols) {
+        this.base = base;
+        this.symbols = symbols;
+    }
+
+    public String getBase() { return base; }
+    public void setBase(String base) { this.base = base; }
+
+    public String getSymbols() { return symbols; }
+    public void setSymbols(String symbols) { this.symbols = symbols; }
+
+}
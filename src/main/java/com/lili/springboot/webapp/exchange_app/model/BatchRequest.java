@@ -0,0 +1,18 @@
+package com.lili.springboot.webapp.exchange_app.model;
+
+import java.util.List;
+
+public class BatchRequest {
+
+    private List<BatchQuery> queries;
+
+    public BatchRequest() {}
+
+    public BatchRequest(List<BatchQuery> queries) {
+        this.queries = queries;
+    }
+
+    public List<BatchQuery> getQueries() { return queries; }
+    public void setQueries(List<BatchQuery> queries) { this.queries = queries; }
+
+}
@@ -0,0 +1,21 @@
+package com.lili.springboot.webapp.exchange_app.model;
+
+import java.util.List;
+
+/**
+ * Results of a batch request, in the order of its queries
+ */
+public class BatchResponse {
+
+    private List<BatchResult> results;
+
+    public BatchResponse() {}
+
+    public BatchResponse(List<BatchResult> results) {
+        this.results = results;
+    }
+
+    public List<BatchResult> getResults() { return results; }
+    public void setResults(List<BatchResult> results) { this.results = results; }
+
+}
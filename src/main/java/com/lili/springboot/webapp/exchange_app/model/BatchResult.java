@@ -0,0 +1,40 @@
+package com.lili.springboot.webapp.exchange_app.model;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Outcome of one query of a batch: the rates, or the reason this query alone failed
+ */
+public class BatchResult {
+
+    private String base;
+    private Map<String, BigDecimal> rates;
+    private String error;
+
+    public BatchResult() {}
+
+    public BatchResult(String base, Map<String, BigDecimal> rates, String error) {
+        this.base = base;
+        this.rates = rates;
+        this.error = error;
+    }
+
+    public static BatchResult success(ExchangeRateResponse response) {
+        return new BatchResult(response.getBase(), response.getRates(), null);
+    }
+
+    public static BatchResult failure(String base, String error) {
+        return new BatchResult(base, null, error);
+    }
+
+    public String getBase() { return base; }
+    public void setBase(String base) { this.base = base; }
+
+    public Map<String, BigDecimal> getRates() { return rates; }
+    public void setRates(Map<String, BigDecimal> rates) { this.rates = rates; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+}
@@ -1,38 +1,187 @@
 package com.lili.springboot.webapp.exchange_app.model;
 
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
 import java.util.Set;
 
-public class CacheKey {
+/**
+ * Immutable key of a request: the base currency and the requested symbols.
+ *
+ * Currencies are identified by their CurrencyRegistry ordinal, the base as a short and the symbols
+ * as a bitset, and the hash is computed once. Symbols no provider has returned yet (so they have no
+ * ordinal) are kept by name; they are rare and never match a rate anyway.
+ */
+public final class CacheKey {
 
-     private final String baseCurrency;
-    private final Set<String> symbols;
+    private static final long[] NO_BITS = new long[0];
+    private static final String[] NO_NAMES = new String[0];
 
-    public CacheKey(String baseCurrency, Set<String> symbols) {
+    private final String baseCurrency;
+    private final short base;
+    private final long[] symbols;
+    private final String[] unresolved;
+    private final int hash;
+
+    private CacheKey(String baseCurrency, short base, long[] symbols, String[] unresolved) {
         this.baseCurrency = baseCurrency;
+        this.base = base;
         this.symbols = symbols;
+        this.unresolved = unresolved;
+        int h = base >= 0 ? base : baseCurrency.hashCode();
+        h = 31 * h + Arrays.hashCode(symbols);
+        this.hash = 31 * h + Arrays.hashCode(unresolved);
+    }
+
+    public static CacheKey of(String baseCurrency, Set<String> symbols) {
+        Builder builder = new Builder(baseCurrency);
+        for (String symbol : symbols) {
+            builder.add(symbol, 0, symbol.length());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds the key straight from the raw comma separated symbols parameter (e.g. "usd, NZD,GBP")
+     * in a single pass: tokens are trimmed and three-letter codes are looked up by their characters,
+     * so known symbols cost neither a substring nor an upper case copy.
+     */
+    public static CacheKey parse(String baseCurrency, String symbols) {
+        Builder builder = new Builder(baseCurrency);
+        int length = symbols.length();
+        int start = 0;
+        while (start <= length) {
+            int end = symbols.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+            builder.add(symbols, start, end);
+            start = end + 1;
+        }
+        return builder.build();
     }
 
     public String getBaseCurrency() { return baseCurrency; }
-    public Set<String> getSymbols() { return symbols; }
+
+    // Ordinal of the base, or -1 when no provider has returned it yet
+    public int getBaseOrdinal() { return base; }
+
+    public boolean hasSymbols() { return symbols.length > 0 || unresolved.length > 0; }
+
+    // Ordinals of the requested symbols, in ascending order
+    public int nextSymbol(int fromOrdinal) {
+        int word = fromOrdinal >>> 6;
+        if (word >= symbols.length) {
+            return -1;
+        }
+        long bits = symbols[word] & (-1L << fromOrdinal);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == symbols.length) {
+                return -1;
+            }
+            bits = symbols[word];
+        }
+    }
+
+    // Requested symbols that had no ordinal when the key was built
+    public String[] getUnresolvedSymbols() { return unresolved.clone(); }
+
+    public Set<String> getSymbols() {
+        Set<String> codes = new HashSet<>(Arrays.asList(unresolved));
+        for (int ordinal = nextSymbol(0); ordinal >= 0; ordinal = nextSymbol(ordinal + 1)) {
+            codes.add(CurrencyRegistry.code(ordinal));
+        }
+        return codes;
+    }
 
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         CacheKey cacheKey = (CacheKey) obj;
-        return Objects.equals(baseCurrency, cacheKey.baseCurrency) &&
-               Objects.equals(symbols, cacheKey.symbols);
+        return hash == cacheKey.hash &&
+               base == cacheKey.base &&
+               (base >= 0 || baseCurrency.equals(cacheKey.baseCurrency)) &&
+               Arrays.equals(symbols, cacheKey.symbols) &&
+               Arrays.equals(unresolved, cacheKey.unresolved);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(baseCurrency, symbols);
+        return hash;
     }
 
     @Override
     public String toString() {
-        return "CacheKey{baseCurrency='" + baseCurrency + "', symbols=" + symbols + "}";
+        return "CacheKey{baseCurrency='" + baseCurrency + "', symbols=" + getSymbols() + "}";
     }
 
+    // Collects the symbols of one key
+    private static final class Builder {
+
+        private final String baseCurrency;
+        private final short base;
+        private long[] bits = NO_BITS;
+        private Set<String> unresolved;
+
+        Builder(String baseCurrency) {
+            String trimmed = baseCurrency.trim();
+            int ordinal = trimmed.length() == 3
+                ? CurrencyRegistry.find(trimmed.charAt(0), trimmed.charAt(1), trimmed.charAt(2))
+                : -1;
+            if (ordinal < 0) {
+                ordinal = CurrencyRegistry.find(trimmed.toUpperCase(Locale.ROOT));
+            }
+            this.base = (short) ordinal;
+            this.baseCurrency = ordinal >= 0 ? CurrencyRegistry.code(ordinal) : trimmed.toUpperCase(Locale.ROOT);
+        }
+
+        // Adds the symbol in text[start, end), ignoring surrounding whitespace and empty tokens
+        void add(String text, int start, int end) {
+            while (start < end && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+            if (start == end) {
+                return;
+            }
+
+            String code = null;
+            int ordinal = end - start == 3
+                ? CurrencyRegistry.find(text.charAt(start), text.charAt(start + 1), text.charAt(start + 2))
+                : -1;
+            if (ordinal < 0) {
+                code = text.substring(start, end).toUpperCase(Locale.ROOT);
+                ordinal = CurrencyRegistry.find(code);
+            }
+
+            if (ordinal >= 0) {
+                int word = ordinal >>> 6;
+                if (word >= bits.length) {
+                    bits = Arrays.copyOf(bits, word + 1);
+                }
+                bits[word] |= 1L << ordinal;
+                return;
+            }
+            if (unresolved == null) {
+                unresolved = new LinkedHashSet<>();
+            }
+            unresolved.add(code);
+        }
+
+        CacheKey build() {
+            String[] names = NO_NAMES;
+            if (unresolved != null) {
+                names = unresolved.toArray(NO_NAMES);
+                Arrays.sort(names);
+            }
+            return new CacheKey(baseCurrency, base, bits, names);
+        }
+    }
 }
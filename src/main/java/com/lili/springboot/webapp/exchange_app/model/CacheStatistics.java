@@ -0,0 +1,45 @@
+package com.lili.springboot.webapp.exchange_app.model;
+
+public class CacheStatistics {
+
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+    private long staleEntries;
+    private long oldestEntryAgeSeconds;
+
+    public CacheStatistics() {}
+
+    public CacheStatistics(long size, long hitCount, long missCount, double hitRate, long evictionCount) {
+        this.size = size;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.hitRate = hitRate;
+        this.evictionCount = evictionCount;
+    }
+
+    // Getters and setters
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public long getHitCount() { return hitCount; }
+    public void setHitCount(long hitCount) { this.hitCount = hitCount; }
+
+    public long getMissCount() { return missCount; }
+    public void setMissCount(long missCount) { this.missCount = missCount; }
+
+    public double getHitRate() { return hitRate; }
+    public void setHitRate(double hitRate) { this.hitRate = hitRate; }
+
+    public long getEvictionCount() { return evictionCount; }
+    public void setEvictionCount(long evictionCount) { this.evictionCount = evictionCount; }
+
+    public long getStaleEntries() { return staleEntries; }
+    public void setStaleEntries(long staleEntries) { this.staleEntries = staleEntries; }
+
+    public long getOldestEntryAgeSeconds() { return oldestEntryAgeSeconds; }
+    public void setOldestEntryAgeSeconds(long oldestEntryAgeSeconds) { this.oldestEntryAgeSeconds = oldestEntryAgeSeconds; }
+
+}
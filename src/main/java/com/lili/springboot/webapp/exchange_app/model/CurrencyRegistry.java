@@ -0,0 +1,114 @@
+package com.lili.springboot.webapp.exchange_app.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Interned currency codes, each one mapped to a small dense ordinal that indexes the slots of a RateTable.
+ *
+ * Three-letter ISO-style codes are hashed perfectly into a fixed array, so looking one up neither
+ * allocates nor hashes a String; longer codes (crypto tokens some providers list) go through a map.
+ * Only provider data registers new codes: request input is looked up with find, so arbitrary
+ * user-supplied symbols can't grow the registry.
+ */
+public final class CurrencyRegistry {
+
+    // Upper bound on distinct codes, codes beyond it are ignored
+    public static final int MAX_CURRENCIES = 4096;
+
+    private static final int LETTERS = 26;
+
+    // Ordinal + 1 of every registered [A-Z]{3} code, 0 when unknown
+    private static final AtomicIntegerArray THREE_LETTER = new AtomicIntegerArray(LETTERS * LETTERS * LETTERS);
+    private static final Map<String, Integer> OTHER = new ConcurrentHashMap<>();
+
+    private static final ReentrantLock registration = new ReentrantLock();
+    private static volatile String[] codes = new String[256];
+    private static volatile int size;
+
+    private CurrencyRegistry() {}
+
+    /**
+     * Ordinal of an upper case code, registering it on first sight. Returns -1 once MAX_CURRENCIES is reached.
+     */
+    public static int register(String code) {
+        int ordinal = find(code);
+        if (ordinal >= 0) {
+            return ordinal;
+        }
+
+        registration.lock();
+        try {
+            ordinal = find(code);
+            if (ordinal >= 0 || size >= MAX_CURRENCIES) {
+                return ordinal;
+            }
+            ordinal = size;
+            if (ordinal == codes.length) {
+                codes = Arrays.copyOf(codes, codes.length * 2);
+            }
+            codes[ordinal] = code;
+            size = ordinal + 1;
+
+            // Publish the ordinal last so a reader that finds it also sees its code
+            int slot = threeLetterSlot(code);
+            if (slot >= 0) {
+                THREE_LETTER.set(slot, ordinal + 1);
+            } else {
+                OTHER.put(code, ordinal);
+            }
+            return ordinal;
+        } finally {
+            registration.unlock();
+        }
+    }
+
+    // Ordinal of an upper case code, or -1 if no provider ever returned it
+    public static int find(String code) {
+        int slot = threeLetterSlot(code);
+        if (slot >= 0) {
+            return THREE_LETTER.get(slot) - 1;
+        }
+        Integer ordinal = OTHER.get(code);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * Ordinal of a three-letter code given as characters in any case, or -1 if it isn't registered.
+     * Lets request parsing look codes up without creating a String for them.
+     */
+    public static int find(char first, char second, char third) {
+        int a = Character.toUpperCase(first) - 'A';
+        int b = Character.toUpperCase(second) - 'A';
+        int c = Character.toUpperCase(third) - 'A';
+        if ((a | b | c) < 0 || a >= LETTERS || b >= LETTERS || c >= LETTERS) {
+            return -1;
+        }
+        return THREE_LETTER.get((a * LETTERS + b) * LETTERS + c) - 1;
+    }
+
+    public static String code(int ordinal) {
+        return codes[ordinal];
+    }
+
+    // Number of registered codes, every ordinal is below it
+    public static int size() {
+        return size;
+    }
+
+    private static int threeLetterSlot(String code) {
+        if (code.length() != 3) {
+            return -1;
+        }
+        int a = code.charAt(0) - 'A';
+        int b = code.charAt(1) - 'A';
+        int c = code.charAt(2) - 'A';
+        if ((a | b | c) < 0 || a >= LETTERS || b >= LETTERS || c >= LETTERS) {
+            return -1;
+        }
+        return (a * LETTERS + b) * LETTERS + c;
+    }
+}
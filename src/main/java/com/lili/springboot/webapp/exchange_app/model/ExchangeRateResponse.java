@@ -1,12 +1,30 @@
 package com.lili.springboot.webapp.exchange_app.model;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class ExchangeRateResponse {
 
      private String base;
     private Map<String, BigDecimal> rates;
+    // Day the rates were published, only set for historical rates
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDate date;
+    // Validator and end of freshness of live rates, sent as ETag and Cache-Control headers instead of in the body
+    @JsonIgnore
+    private String etag;
+    @JsonIgnore
+    private Instant freshUntil;
+    // The body encoded once for every hit on this response: JSON, and gzipped JSON for large bodies
+    @JsonIgnore
+    private volatile byte[] json;
+    @JsonIgnore
+    private volatile byte[] gzippedJson;
 
     public ExchangeRateResponse() {}
 
@@ -21,4 +39,19 @@ public class ExchangeRateResponse {
     public Map<String, BigDecimal> getRates() { return rates; }
     public void setRates(Map<String, BigDecimal> rates) { this.rates = rates; }
 
+    public LocalDate getDate() { return date; }
+    public void setDate(LocalDate date) { this.date = date; }
+
+    public String getEtag() { return etag; }
+    public void setEtag(String etag) { this.etag = etag; }
+
+    public Instant getFreshUntil() { return freshUntil; }
+    public void setFreshUntil(Instant freshUntil) { this.freshUntil = freshUntil; }
+
+    public byte[] getJson() { return json; }
+    public void setJson(byte[] json) { this.json = json; }
+
+    public byte[] getGzippedJson() { return gzippedJson; }
+    public void setGzippedJson(byte[] gzippedJson) { this.gzippedJson = gzippedJson; }
+
 }
@@ -0,0 +1,37 @@
+package com.lili.springboot.webapp.exchange_app.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+public class HistoricalRatesResponse {
+
+    private String base;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    // Rates of every published day in the range, in date order
+    private Map<LocalDate, Map<String, BigDecimal>> rates;
+
+    public HistoricalRatesResponse() {}
+
+    public HistoricalRatesResponse(String base, LocalDate startDate, LocalDate endDate,
+                                   Map<LocalDate, Map<String, BigDecimal>> rates) {
+        this.base = base;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.rates = rates;
+    }
+
+    public String getBase() { return base; }
+    public void setBase(String base) { this.base = base; }
+
+    public LocalDate getStartDate() { return startDate; }
+    public void setStartDate(LocalDate startDate) { this.startDate = startDate; }
+
+    public LocalDate getEndDate() { return endDate; }
+    public void setEndDate(LocalDate endDate) { this.endDate = endDate; }
+
+    public Map<LocalDate, Map<String, BigDecimal>> getRates() { return rates; }
+    public void setRates(Map<LocalDate, Map<String, BigDecimal>> rates) { this.rates = rates; }
+
+}
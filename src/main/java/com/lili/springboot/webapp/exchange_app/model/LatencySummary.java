@@ -0,0 +1,40 @@
+package com.lili.springboot.webapp.exchange_app.model;
+
+public class LatencySummary {
+
+    // Calls recorded since startup
+    private long count;
+    // Milliseconds; the mean since startup, max and percentiles over the rolling latency window
+    private double mean;
+    private double max;
+    private double p50;
+    private double p99;
+    private double p999;
+
+    public LatencySummary() {}
+
+    public LatencySummary(long count, double mean, double max) {
+        this.count = count;
+        this.mean = mean;
+        this.max = max;
+    }
+
+    // Getters and setters
+    public long getCount() { return count; }
+    public void setCount(long count) { this.count = count; }
+
+    public double getMean() { return mean; }
+    public void setMean(double mean) { this.mean = mean; }
+
+    public double getMax() { return max; }
+    public void setMax(double max) { this.max = max; }
+
+    public double getP50() { return p50; }
+    public void setP50(double p50) { this.p50 = p50; }
+
+    public double getP99() { return p99; }
+    public void setP99(double p99) { this.p99 = p99; }
+
+    public double getP999() { return p999; }
+    public void setP999(double p999) { this.p999 = p999; }
+}
@@ -1,11 +1,29 @@
 package com.lili.springboot.webapp.exchange_app.model;
 
 import java.util.List;
+import java.util.Map;
 
 public class MetricsResponse {
 
     private long totalQueries;
+    private long coalescedQueries;
+    private long staleResponses;
+    private long backgroundRefreshes;
+    private long failedRefreshes;
+    private long activeStreams;
+    private long convertedRows;
+    // Queries answered from a cached table, and queries that had to wait for the providers
+    private long cacheHits;
+    private long cacheMisses;
+    // Admission control: requests over their client's rate limit, misses shed under overload, refreshes postponed
+    private long rateLimitedRequests;
+    private long shedMisses;
+    private long deferredRefreshes;
     private List<ApiMetrics> apis;
+    private CacheStatistics cache;
+    private LatencySummary cacheHitLatency;
+    private LatencySummary cacheMissLatency;
+    private Map<String, LatencySummary> endpoints;
 
     public MetricsResponse() {}
 
@@ -17,7 +35,51 @@ public class MetricsResponse {
     public long getTotalQueries() { return totalQueries; }
     public void setTotalQueries(long totalQueries) { this.totalQueries = totalQueries; }
     
+    public long getCoalescedQueries() { return coalescedQueries; }
+    public void setCoalescedQueries(long coalescedQueries) { this.coalescedQueries = coalescedQueries; }
+    
+    public long getStaleResponses() { return staleResponses; }
+    public void setStaleResponses(long staleResponses) { this.staleResponses = staleResponses; }
+    
+    public long getBackgroundRefreshes() { return backgroundRefreshes; }
+    public void setBackgroundRefreshes(long backgroundRefreshes) { this.backgroundRefreshes = backgroundRefreshes; }
+    
+    public long getFailedRefreshes() { return failedRefreshes; }
+    public void setFailedRefreshes(long failedRefreshes) { this.failedRefreshes = failedRefreshes; }
+    
+    public long getActiveStreams() { return activeStreams; }
+    public void setActiveStreams(long activeStreams) { this.activeStreams = activeStreams; }
+    public long getConvertedRows() { return convertedRows; }
+    public void setConvertedRows(long convertedRows) { this.convertedRows = convertedRows; }
+    
+    public long getCacheHits() { return cacheHits; }
+    public void setCacheHits(long cacheHits) { this.cacheHits = cacheHits; }
+    
+    public long getCacheMisses() { return cacheMisses; }
+    public void setCacheMisses(long cacheMisses) { this.cacheMisses = cacheMisses; }
+
+    public long getRateLimitedRequests() { return rateLimitedRequests; }
+    public void setRateLimitedRequests(long rateLimitedRequests) { this.rateLimitedRequests = rateLimitedRequests; }
+
+    public long getShedMisses() { return shedMisses; }
+    public void setShedMisses(long shedMisses) { this.shedMisses = shedMisses; }
+
+    public long getDeferredRefreshes() { return deferredRefreshes; }
+    public void setDeferredRefreshes(long deferredRefreshes) { this.deferredRefreshes = deferredRefreshes; }
+    
     public List<ApiMetrics> getApis() { return apis; }
     public void setApis(List<ApiMetrics> apis) { this.apis = apis; }
+    
+    public CacheStatistics getCache() { return cache; }
+    public void setCache(CacheStatistics cache) { this.cache = cache; }
+    
+    public LatencySummary getCacheHitLatency() { return cacheHitLatency; }
+    public void setCacheHitLatency(LatencySummary cacheHitLatency) { this.cacheHitLatency = cacheHitLatency; }
+    
+    public LatencySummary getCacheMissLatency() { return cacheMissLatency; }
+    public void setCacheMissLatency(LatencySummary cacheMissLatency) { this.cacheMissLatency = cacheMissLatency; }
+    
+    public Map<String, LatencySummary> getEndpoints() { return endpoints; }
+    public void setEndpoints(Map<String, LatencySummary> endpoints) { this.endpoints = endpoints; }
 
 }
@@ -0,0 +1,197 @@
+package com.lili.springboot.webapp.exchange_app.model;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every averaged rate known for one base currency, as fetched at a point in time.
+ * Requests for any subset of symbols of the same base are answered from one table.
+ *
+ * Rates live in primitive arrays indexed by CurrencyRegistry ordinal: each slot holds a decimal
+ * fixed-point value, an unscaled long plus its decimal scale, rounded to 16 significant digits
+ * (MathContext.DECIMAL64) so it always fits. A BigDecimal is only created when a rate is read.
+ */
+public class RateTable {
+
+    // Marks a slot without a rate
+    public static final long ABSENT = Long.MIN_VALUE;
+
+    private final String base;
+    private final long[] unscaled;
+    private final byte[] scales;
+    private final int size;
+    private final Instant fetchedAt;
+    private final long version;
+
+    private RateTable(String base, long[] unscaled, byte[] scales, int size, Instant fetchedAt) {
+        this.base = base;
+        this.unscaled = unscaled;
+        this.scales = scales;
+        this.size = size;
+        this.fetchedAt = fetchedAt;
+        this.version = contentHash();
+    }
+
+    // 64-bit hash of the base and every rate, independent of the array capacity and of fetchedAt
+    private long contentHash() {
+        long hash = base.hashCode();
+        for (int ordinal = 0; ordinal < unscaled.length; ordinal++) {
+            if (unscaled[ordinal] != ABSENT) {
+                hash = (hash ^ ordinal) * 0x9E3779B97F4A7C15L;
+                hash = (hash ^ unscaled[ordinal]) * 0x9E3779B97F4A7C15L;
+                hash = (hash ^ scales[ordinal]) * 0x9E3779B97F4A7C15L;
+            }
+        }
+        return hash ^ (hash >>> 29);
+    }
+
+    public static RateTable of(String base, Map<String, BigDecimal> rates, Instant fetchedAt) {
+        Builder builder = new Builder();
+        rates.forEach(builder::put);
+        return builder.build(base, fetchedAt);
+    }
+
+    public BigDecimal getRate(String symbol) {
+        int ordinal = CurrencyRegistry.find(symbol);
+        return ordinal >= 0 ? getRate(ordinal) : null;
+    }
+
+    public BigDecimal getRate(int ordinal) {
+        return hasRate(ordinal) ? BigDecimal.valueOf(unscaled[ordinal], scales[ordinal]) : null;
+    }
+
+    public boolean hasRate(String symbol) {
+        int ordinal = CurrencyRegistry.find(symbol);
+        return ordinal >= 0 && hasRate(ordinal);
+    }
+
+    public boolean hasRate(int ordinal) {
+        return ordinal >= 0 && ordinal < unscaled.length && unscaled[ordinal] != ABSENT;
+    }
+
+    // Fixed-point parts of a present rate: the rate is unscaled * 10^-scale
+    public long getUnscaled(int ordinal) { return unscaled[ordinal]; }
+    public int getScale(int ordinal) { return scales[ordinal]; }
+
+    // Ordinals at or beyond the capacity never hold a rate
+    public int capacity() { return unscaled.length; }
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public Duration getAge() { return Duration.between(fetchedAt, Instant.now()); }
+    public boolean isOlderThan(Duration age) { return getAge().compareTo(age) > 0; }
+
+    public String getBase() { return base; }
+    public Instant getFetchedAt() { return fetchedAt; }
+
+    /**
+     * Version of the rates: tables holding the same rates have the same version whenever they were
+     * fetched, so a refresh that changed nothing keeps the validators already handed out to clients.
+     */
+    public long getVersion() { return version; }
+
+    /**
+     * Cross rates of another base computed from this table: base/symbol = (this/symbol) / (this/base),
+     * at the same point in time. Returns null if this table has no rate for the base.
+     */
+    public RateTable rebase(String baseCurrency) {
+        int baseOrdinal = CurrencyRegistry.find(baseCurrency);
+        BigDecimal toBase = getRate(baseOrdinal);
+        if (toBase == null || toBase.signum() == 0) {
+            return null;
+        }
+        Builder rates = new Builder();
+        for (int ordinal = 0; ordinal < unscaled.length; ordinal++) {
+            if (ordinal != baseOrdinal && hasRate(ordinal)) {
+                rates.put(ordinal, getRate(ordinal).divide(toBase, MathContext.DECIMAL64));
+            }
+        }
+        rates.put(base, BigDecimal.ONE.divide(toBase, MathContext.DECIMAL64));
+        return rates.build(baseCurrency, fetchedAt);
+    }
+
+    // Copy of every rate keyed by currency code, meant for tests and diagnostics rather than the request path
+    public Map<String, BigDecimal> getRates() {
+        Map<String, BigDecimal> rates = new HashMap<>();
+        for (int ordinal = 0; ordinal < unscaled.length; ordinal++) {
+            if (hasRate(ordinal)) {
+                rates.put(CurrencyRegistry.code(ordinal), getRate(ordinal));
+            }
+        }
+        return rates;
+    }
+
+    @Override
+    public String toString() {
+        return "RateTable{base='" + base + "', rates=" + size + ", fetchedAt=" + fetchedAt + "}";
+    }
+
+    /**
+     * Collects rates by ordinal; a later put for the same currency replaces the earlier one.
+     */
+    public static class Builder {
+
+        private long[] unscaled;
+        private byte[] scales;
+        private int size;
+
+        public Builder() {
+            unscaled = new long[CurrencyRegistry.size()];
+            scales = new byte[unscaled.length];
+            Arrays.fill(unscaled, ABSENT);
+        }
+
+        // Registers the code if needed; false if the registry is full or the rate can't be represented
+        public boolean put(String symbol, BigDecimal rate) {
+            int ordinal = CurrencyRegistry.register(symbol);
+            return ordinal >= 0 && put(ordinal, rate);
+        }
+
+        public boolean put(int ordinal, BigDecimal rate) {
+            BigDecimal rounded = rate.round(MathContext.DECIMAL64);
+            if (rounded.scale() > Byte.MAX_VALUE) {
+                rounded = rounded.setScale(Byte.MAX_VALUE, MathContext.DECIMAL64.getRoundingMode());
+            }
+            if (rounded.scale() < Byte.MIN_VALUE) {
+                return false;
+            }
+            return putUnscaled(ordinal, rounded.unscaledValue().longValue(), rounded.scale());
+        }
+
+        // Unscaled value of at most 16 digits, with a scale that fits in a byte
+        public boolean putUnscaled(int ordinal, long value, int scale) {
+            if (ordinal >= unscaled.length) {
+                int capacity = Math.max(ordinal + 1, CurrencyRegistry.size());
+                int previous = unscaled.length;
+                unscaled = Arrays.copyOf(unscaled, capacity);
+                scales = Arrays.copyOf(scales, capacity);
+                Arrays.fill(unscaled, previous, capacity, ABSENT);
+            }
+            if (unscaled[ordinal] == ABSENT) {
+                size++;
+            }
+            unscaled[ordinal] = value;
+            scales[ordinal] = (byte) scale;
+            return true;
+        }
+
+        // Copies every rate of the table into this builder
+        public Builder putAll(RateTable table) {
+            for (int ordinal = 0; ordinal < table.unscaled.length; ordinal++) {
+                if (table.hasRate(ordinal)) {
+                    putUnscaled(ordinal, table.unscaled[ordinal], table.scales[ordinal]);
+                }
+            }
+            return this;
+        }
+
+        public RateTable build(String base, Instant fetchedAt) {
+            return new RateTable(base, unscaled, scales, size, fetchedAt);
+        }
+    }
+
+}
@@ -0,0 +1,311 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.CurrencyRegistry;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+
+/**
+ * Converts a stream of (amount, from, to) rows into converted rows, in CSV or NDJSON.
+ *
+ * Rows are read and written one at a time, so memory stays constant whatever the input size; a row longer
+ * than conversion-max-line-length is skipped with an error without being held in memory.
+ * Each base table is resolved once per call and reused for every row with the same base, which also means
+ * the whole call converts against one consistent snapshot of the rates. A row that can't be converted
+ * gets an error in its output row and the rest of the input is still processed.
+ */
+@Service
+public class BulkConversionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkConversionService.class);
+
+    public static final String CSV_HEADER = "amount,from,to,rate,converted,error";
+
+    // Rows between two flushes, so the client receives output while the input is still being sent
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    // Digits an amount may have before and after the decimal point; beyond them a single row
+    // (e.g. 1e99999999) would make the multiplication and rounding build numbers of any size
+    private static final int MAX_AMOUNT_INTEGER_DIGITS = 30;
+    private static final int MAX_AMOUNT_DECIMALS = 30;
+
+    private final ExchangeRateService exchangeRateService;
+    private final MetricsService metricsService;
+    private final ExchangeRateProperties properties;
+    private final JsonFactory jsonFactory;
+
+    public BulkConversionService(ExchangeRateService exchangeRateService, MetricsService metricsService,
+                                 ExchangeRateProperties properties, ObjectMapper objectMapper) {
+        this.exchangeRateService = exchangeRateService;
+        this.metricsService = metricsService;
+        this.properties = properties;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Input lines "amount,from,to" (a leading "amount,..." header line is skipped), output lines
+     * "amount,from,to,rate,converted,error" with an empty error or empty rate and converted.
+     * Returns the number of rows processed.
+     */
+    public long convertCsv(Reader reader, Writer output) throws IOException {
+        LineReader input = new LineReader(reader, properties.getConversionMaxLineLength());
+        RateSnapshot rates = new RateSnapshot();
+        output.write(CSV_HEADER);
+        output.write('\n');
+
+        long rows = 0;
+        String line;
+        boolean first = true;
+        while ((line = input.readLine()) != null) {
+            if (input.isTooLong()) {
+                first = false;
+                output.write(",,,,,");
+                output.write(tooLongMessage());
+                output.write('\n');
+                if (++rows % FLUSH_EVERY_ROWS == 0) {
+                    output.flush();
+                }
+                continue;
+            }
+            if (first && line.regionMatches(true, 0, "amount", 0, 6)) {
+                first = false;
+                continue;
+            }
+            first = false;
+            if (line.isBlank()) {
+                continue;
+            }
+
+            String[] fields = line.split(",", -1);
+            String amount = fields[0].trim();
+            String from = fields.length > 1 ? fields[1].trim().toUpperCase(Locale.ROOT) : "";
+            String to = fields.length > 2 ? fields[2].trim().toUpperCase(Locale.ROOT) : "";
+            output.write(amount);
+            output.write(',');
+            output.write(from);
+            output.write(',');
+            output.write(to);
+            output.write(',');
+            try {
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("Expected amount,from,to");
+                }
+                BigDecimal rate = rates.rate(from, to);
+                BigDecimal converted = convert(amount(amount), rate);
+                output.write(published(rate).toPlainString());
+                output.write(',');
+                output.write(converted.toPlainString());
+                output.write(',');
+            } catch (IllegalArgumentException e) {
+                output.write(",,");
+                output.write(errorMessage(e).replace(',', ';'));
+            }
+            output.write('\n');
+
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                output.flush();
+            }
+        }
+        output.flush();
+        metricsService.incrementConvertedRows(rows);
+        logger.info("Converted {} CSV rows using {} rate tables", rows, rates.size());
+        return rows;
+    }
+
+    /**
+     * Input lines {"amount": 100.5, "from": "EUR", "to": "USD"}, output lines with the same fields plus
+     * "rate" and "converted", or "error". Returns the number of rows processed.
+     */
+    public long convertNdjson(Reader reader, Writer output) throws IOException {
+        LineReader input = new LineReader(reader, properties.getConversionMaxLineLength());
+        RateSnapshot rates = new RateSnapshot();
+        long rows = 0;
+        String line;
+        try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Rows are separated by the newline written after each of them
+            generator.setRootValueSeparator(null);
+            while ((line = input.readLine()) != null) {
+                if (line.isBlank() && !input.isTooLong()) {
+                    continue;
+                }
+
+                String amount = null;
+                String from = null;
+                String to = null;
+                String error = null;
+                if (input.isTooLong()) {
+                    error = tooLongMessage();
+                } else {
+                    try (JsonParser parser = jsonFactory.createParser(line)) {
+                        if (parser.nextToken() != JsonToken.START_OBJECT) {
+                            throw new IllegalArgumentException("Expected a JSON object");
+                        }
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String field = parser.currentName();
+                            parser.nextToken();
+                            switch (field) {
+                                case "amount" -> amount = parser.getText();
+                                case "from" -> from = parser.getText().trim().toUpperCase(Locale.ROOT);
+                                case "to" -> to = parser.getText().trim().toUpperCase(Locale.ROOT);
+                                default -> parser.skipChildren();
+                            }
+                        }
+                    } catch (IOException | IllegalArgumentException e) {
+                        error = "Invalid row: " + e.getMessage();
+                    }
+                }
+
+                generator.writeStartObject();
+                generator.writeStringField("amount", amount);
+                generator.writeStringField("from", from);
+                generator.writeStringField("to", to);
+                if (error == null) {
+                    try {
+                        if (amount == null || from == null || to == null) {
+                            throw new IllegalArgumentException("Expected amount, from and to");
+                        }
+                        BigDecimal rate = rates.rate(from, to);
+                        BigDecimal converted = convert(amount(amount), rate);
+                        generator.writeFieldName("rate");
+                        generator.writeNumber(published(rate));
+                        generator.writeFieldName("converted");
+                        generator.writeNumber(converted);
+                    } catch (IllegalArgumentException e) {
+                        error = errorMessage(e);
+                    }
+                }
+                if (error != null) {
+                    generator.writeStringField("error", error);
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+
+                if (++rows % FLUSH_EVERY_ROWS == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        output.flush();
+        metricsService.incrementConvertedRows(rows);
+        logger.info("Converted {} NDJSON rows using {} rate tables", rows, rates.size());
+        return rows;
+    }
+
+    private static BigDecimal amount(String text) {
+        BigDecimal amount = new BigDecimal(text);
+        if (amount.precision() - amount.scale() > MAX_AMOUNT_INTEGER_DIGITS || amount.scale() > MAX_AMOUNT_DECIMALS) {
+            throw new IllegalArgumentException("Amount out of range");
+        }
+        return amount;
+    }
+
+    // Only the converted amount is rounded, the rate is used with every digit the table holds
+    private BigDecimal convert(BigDecimal amount, BigDecimal rate) {
+        return amount.multiply(rate).setScale(6, RoundingMode.HALF_UP);
+    }
+
+    // Rates are shown with at least the 6 decimals providers publish, small derived rates keep all their digits
+    private static BigDecimal published(BigDecimal rate) {
+        return rate.scale() < 6 ? rate.setScale(6) : rate;
+    }
+
+    private String tooLongMessage() {
+        return "Row longer than " + properties.getConversionMaxLineLength() + " characters";
+    }
+
+    private String errorMessage(IllegalArgumentException e) {
+        return e instanceof NumberFormatException ? "Invalid amount" : e.getMessage();
+    }
+
+    /**
+     * Rates of one conversion call: each base table is fetched once and kept for the rest of the call.
+     * Codes are resolved through the CurrencyRegistry before anything else, and tables are kept by ordinal,
+     * so the snapshot holds at most one entry per known currency whatever codes the input contains.
+     * Unknown codes are row errors; they are never sent to the service.
+     */
+    private class RateSnapshot {
+
+        private final Map<Integer, RateTable> tables = new HashMap<>();
+        // Bases whose table couldn't be fetched, with the error reported on their rows
+        private final Map<Integer, String> failures = new HashMap<>();
+        private boolean pivotLoaded;
+
+        BigDecimal rate(String from, String to) {
+            if (from.isEmpty() || to.isEmpty()) {
+                throw new IllegalArgumentException("Missing currency");
+            }
+            int fromOrdinal = ordinal(from);
+            int toOrdinal = ordinal(to);
+            if (fromOrdinal == toOrdinal) {
+                return BigDecimal.ONE;
+            }
+
+            BigDecimal rate = table(fromOrdinal).getRate(toOrdinal);
+            if (rate == null) {
+                throw new IllegalArgumentException("No rate for " + from + "/" + to);
+            }
+            return rate;
+        }
+
+        int size() {
+            return tables.size();
+        }
+
+        private int ordinal(String code) {
+            int ordinal = CurrencyRegistry.find(code);
+            if (ordinal < 0 && !pivotLoaded) {
+                // Right after startup few codes are known yet; the pivot table registers every code it lists
+                pivotLoaded = true;
+                try {
+                    exchangeRateService.getPivotTable();
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to load the pivot table during conversion: {}", e.getMessage());
+                }
+                ordinal = CurrencyRegistry.find(code);
+            }
+            if (ordinal < 0) {
+                throw new IllegalArgumentException("Unknown currency " + code);
+            }
+            return ordinal;
+        }
+
+        private RateTable table(int ordinal) {
+            RateTable table = tables.get(ordinal);
+            if (table != null) {
+                return table;
+            }
+            String failure = failures.get(ordinal);
+            if (failure == null) {
+                String base = CurrencyRegistry.code(ordinal);
+                try {
+                    table = exchangeRateService.getRateTable(base);
+                    tables.put(ordinal, table);
+                    return table;
+                } catch (RuntimeException e) {
+                    logger.error("Failed to load rates for {} during conversion: {}", base, e.getMessage());
+                    failure = "Rates for " + base + " unavailable: " + e.getMessage();
+                    failures.put(ordinal, failure);
+                }
+            }
+            throw new IllegalArgumentException(failure);
+        }
+    }
+}
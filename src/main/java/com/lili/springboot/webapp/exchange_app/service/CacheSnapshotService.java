@@ -0,0 +1,175 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the rate cache across restarts: the cached tables are written to a binary snapshot file
+ * periodically and on shutdown, and put back into ExchangeRateService at startup, before requests
+ * are served, so a restarted instance doesn't send a burst of misses upstream.
+ *
+ * The file is [int magic][int version][int count] followed by one record per table:
+ * [byte length][base][long epochSecond][int nano] and the rates in RateTableCodec form.
+ * It is read through a memory mapping straight into fixed-point tables, and replaced atomically
+ * so a crash mid-write leaves the previous snapshot intact.
+ */
+@Service
+public class CacheSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheSnapshotService.class);
+
+    private static final int MAGIC = 0x52544353; // "RTCS"
+    private static final int VERSION = 1;
+    private static final int HEADER = 3 * Integer.BYTES;
+
+    private final ExchangeRateService exchangeRateService;
+    private final ExchangeRateProperties properties;
+
+    // Tables of the last snapshot written or restored, to skip rewriting an unchanged cache
+    private Set<RateTable> lastSnapshot = Collections.emptySet();
+
+    public CacheSnapshotService(ExchangeRateService exchangeRateService, ExchangeRateProperties properties) {
+        this.exchangeRateService = exchangeRateService;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void restoreSnapshot() {
+        Path file = snapshotFile();
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            List<RateTable> tables = readSnapshot(file);
+            exchangeRateService.restoreTables(tables);
+            lastSnapshot = identitySet(tables);
+            logger.info("Loaded cache snapshot of {} tables from {} in {} ms",
+                tables.size(), file, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            // A missing or corrupt snapshot only means a cold start
+            logger.warn("Ignoring unreadable cache snapshot {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.exchange-rate.cache-snapshot-interval:60000}",
+        fixedDelayString = "${app.exchange-rate.cache-snapshot-interval:60000}")
+    public void writeSnapshot() {
+        Path file = snapshotFile();
+        if (file == null) {
+            return;
+        }
+        List<RateTable> tables = exchangeRateService.getCachedTables();
+        Set<RateTable> current = identitySet(tables);
+        if (tables.isEmpty() || current.equals(lastSnapshot)) {
+            return;
+        }
+        try {
+            writeSnapshot(file, tables);
+            lastSnapshot = current;
+            logger.debug("Wrote cache snapshot of {} tables to {}", tables.size(), file);
+        } catch (IOException e) {
+            logger.error("Failed to write cache snapshot {}: {}", file, e.getMessage());
+        }
+    }
+
+    // Last snapshot on a clean shutdown, so a rolling restart picks up the freshest tables
+    @PreDestroy
+    public void writeFinalSnapshot() {
+        writeSnapshot();
+    }
+
+    static void writeSnapshot(Path file, List<RateTable> tables) throws IOException {
+        List<byte[]> bases = new ArrayList<>(tables.size());
+        int size = HEADER;
+        for (RateTable table : tables) {
+            byte[] base = table.getBase().getBytes(StandardCharsets.US_ASCII);
+            bases.add(base);
+            size += 1 + base.length + Long.BYTES + Integer.BYTES + RateTableCodec.encodedSize(table);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(tables.size());
+        for (int i = 0; i < tables.size(); i++) {
+            RateTable table = tables.get(i);
+            buffer.put((byte) bases.get(i).length).put(bases.get(i));
+            buffer.putLong(table.getFetchedAt().getEpochSecond()).putInt(table.getFetchedAt().getNano());
+            RateTableCodec.encode(table, buffer);
+        }
+        buffer.flip();
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static List<RateTable> readSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+                throw new IOException("Not a version " + VERSION + " cache snapshot");
+            }
+            int count = buffer.getInt(2 * Integer.BYTES);
+            List<RateTable> tables = new ArrayList<>(count);
+            int position = HEADER;
+            for (int i = 0; i < count; i++) {
+                int length = buffer.get(position);
+                byte[] base = new byte[length];
+                buffer.get(position + 1, base);
+                position += 1 + length;
+                Instant fetchedAt = Instant.ofEpochSecond(buffer.getLong(position), buffer.getInt(position + Long.BYTES));
+                position += Long.BYTES + Integer.BYTES;
+                long end = RateTableCodec.skip(buffer, position, size);
+                if (end < 0) {
+                    throw new IOException("Truncated cache snapshot");
+                }
+                tables.add(RateTableCodec.decode(buffer, position, new String(base, StandardCharsets.US_ASCII), fetchedAt));
+                position = (int) end;
+            }
+            return tables;
+        }
+    }
+
+    private Path snapshotFile() {
+        String file = properties.getCacheSnapshotFile();
+        return file == null || file.isBlank() ? null : Path.of(file);
+    }
+
+    private static Set<RateTable> identitySet(List<RateTable> tables) {
+        Set<RateTable> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(tables);
+        return set;
+    }
+}
@@ -0,0 +1,209 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+
+/**
+ * Circuit breaker of one provider, fed with the outcome and duration of every call.
+ *
+ * CLOSED: calls go through and the last breaker-window-size outcomes are kept; once at least
+ * breaker-minimum-calls are known, a failure rate or slow call rate at or above its threshold opens it.
+ * OPEN: calls are rejected without reaching the provider for breaker-open-duration.
+ * HALF_OPEN: up to breaker-half-open-calls probes go through; if all succeed in time the breaker
+ * closes with a fresh window, the first failing or slow probe opens it again.
+ *
+ * Closed-state permission checks only read a volatile; outcomes are recorded under a ReentrantLock
+ * (not synchronized, which would pin virtual threads).
+ */
+public final class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final byte SUCCESS = 1;
+    private static final byte SLOW = 2;
+    private static final byte FAILURE = 3;
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+
+    // Ring of the latest outcomes in closed state, with running counts
+    private final byte[] window;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+
+    private int probesStarted;
+    private int probesSucceeded;
+
+    public CircuitBreaker(String name, ExchangeRateProperties properties) {
+        this.name = name;
+        this.window = new byte[Math.max(1, properties.getBreakerWindowSize())];
+        this.minimumCalls = Math.min(window.length, Math.max(1, properties.getBreakerMinimumCalls()));
+        this.failureRateThreshold = properties.getBreakerFailureRateThreshold();
+        this.slowCallRateThreshold = properties.getBreakerSlowCallRateThreshold();
+        this.slowCallNanos = properties.getBreakerSlowCallDuration().toNanos();
+        this.openNanos = properties.getBreakerOpenDuration().toNanos();
+        this.halfOpenCalls = Math.max(1, properties.getBreakerHalfOpenCalls());
+    }
+
+    /**
+     * Whether a call may go to the provider now. Every permitted call must be followed by
+     * onSuccess, onError or onIgnored.
+     */
+    public boolean tryAcquirePermission() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= halfOpenCalls) {
+                    return false;
+                }
+                probesStarted++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess(Duration duration) {
+        record(duration.toNanos() >= slowCallNanos ? SLOW : SUCCESS);
+    }
+
+    public void onError() {
+        record(FAILURE);
+    }
+
+    // Permitted call that ended without an outcome (cancelled), frees its half-open probe
+    public void onIgnored() {
+        if (state != State.HALF_OPEN) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && probesStarted > 0) {
+                probesStarted--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() { return name; }
+    public State getState() { return state; }
+
+    // Percentage of failed calls in the current window, 0 while it is empty
+    public float getFailureRate() {
+        lock.lock();
+        try {
+            return calls == 0 ? 0 : failures * 100f / calls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Percentage of calls in the current window that succeeded but took breaker-slow-call-duration or more
+    public float getSlowCallRate() {
+        lock.lock();
+        try {
+            return calls == 0 ? 0 : slowCalls * 100f / calls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(byte outcome) {
+        lock.lock();
+        try {
+            switch (state) {
+                case HALF_OPEN -> {
+                    if (outcome != SUCCESS) {
+                        transitionTo(State.OPEN);
+                    } else if (++probesSucceeded >= halfOpenCalls) {
+                        transitionTo(State.CLOSED);
+                    }
+                }
+                case CLOSED -> {
+                    evict(window[next]);
+                    window[next] = outcome;
+                    next = (next + 1) % window.length;
+                    calls++;
+                    if (outcome == FAILURE) {
+                        failures++;
+                    } else if (outcome == SLOW) {
+                        slowCalls++;
+                    }
+                    if (calls >= minimumCalls && (failures * 100 >= failureRateThreshold * calls
+                            || slowCalls * 100 >= slowCallRateThreshold * calls)) {
+                        transitionTo(State.OPEN);
+                    }
+                }
+                case OPEN -> {
+                    // Late outcome of a call started before the breaker opened
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict(byte outcome) {
+        if (outcome == 0) {
+            return;
+        }
+        calls--;
+        if (outcome == FAILURE) {
+            failures--;
+        } else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    // Called with the lock held
+    private void transitionTo(State target) {
+        State previous = state;
+        if (target == State.OPEN) {
+            openedAt = System.nanoTime();
+            logger.warn("Circuit breaker of {} opened from {} (failure rate {}%, slow call rate {}%)", name, previous,
+                calls == 0 ? 0 : failures * 100 / calls, calls == 0 ? 0 : slowCalls * 100 / calls);
+        } else {
+            logger.info("Circuit breaker of {} moved from {} to {}", name, previous, target);
+        }
+        if (target == State.CLOSED) {
+            Arrays.fill(window, (byte) 0);
+            next = 0;
+            calls = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+        probesStarted = 0;
+        probesSucceeded = 0;
+        state = target;
+    }
+}
@@ -0,0 +1,87 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Conditional GETs for a provider client.
+ *
+ * The ETag and Last-Modified of each successful response are remembered together with the rates parsed
+ * from it and sent back as If-None-Match / If-Modified-Since the next time the same rates are asked for.
+ * A 304 means the provider's data hasn't changed: the remembered rates are returned as a fresh result
+ * and the body is neither downloaded nor parsed again.
+ */
+class ConditionalRateFetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConditionalRateFetcher.class);
+
+    // Requests remembered per client, one per base and symbol set asked for
+    private static final int MAX_ENTRIES = 1_000;
+
+    private record Validated(String etag, String lastModified, Map<String, BigDecimal> rates) {}
+
+    private final Cache<String, Validated> validated = Caffeine.newBuilder()
+        .maximumSize(MAX_ENTRIES)
+        .build();
+
+    /**
+     * Sends the request, conditional if an earlier response for the same base and symbols had validators.
+     * Error statuses fail the Mono with a WebClientResponseException, like retrieve() does.
+     */
+    Mono<Map<String, BigDecimal>> fetch(WebClient.RequestHeadersSpec<?> request, String baseCurrency, Set<String> symbols,
+                                        Function<Flux<DataBuffer>, Mono<Map<String, BigDecimal>>> parser) {
+        String key = baseCurrency + new TreeSet<>(symbols);
+        Validated previous = validated.getIfPresent(key);
+        if (previous != null) {
+            request.headers(headers -> {
+                if (previous.etag() != null) {
+                    headers.setIfNoneMatch(previous.etag());
+                }
+                if (previous.lastModified() != null) {
+                    headers.set(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified());
+                }
+            });
+        }
+
+        return request.exchangeToMono(response -> {
+            if (previous != null && response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                logger.debug("Rates for {} not modified upstream", key);
+                return response.releaseBody().thenReturn(previous.rates());
+            }
+            if (!response.statusCode().is2xxSuccessful()) {
+                return response.createError();
+            }
+
+            HttpHeaders headers = response.headers().asHttpHeaders();
+            String etag = headers.getETag();
+            String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+            return parser.apply(response.bodyToFlux(DataBuffer.class))
+                .map(rates -> {
+                    if (etag != null || lastModified != null) {
+                        Map<String, BigDecimal> unmodifiable = Collections.unmodifiableMap(rates);
+                        validated.put(key, new Validated(etag, lastModified, unmodifiable));
+                        return unmodifiable;
+                    }
+                    validated.invalidate(key);
+                    return rates;
+                });
+        });
+    }
+}
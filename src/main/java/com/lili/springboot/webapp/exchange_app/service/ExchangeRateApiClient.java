@@ -6,6 +6,7 @@ import java.util.Set;
 
 public interface ExchangeRateApiClient {
      String getApiName();
+    // An empty symbol set asks for every rate the provider publishes for the base currency
     Map<String, BigDecimal> getExchangeRates(String baseCurrency, Set<String> symbols);
 
 }
@@ -1,122 +1,740 @@
 package com.lili.springboot.webapp.exchange_app.service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties.FetchMode;
+import com.lili.springboot.webapp.exchange_app.model.BatchResult;
 import com.lili.springboot.webapp.exchange_app.model.CacheKey;
+import com.lili.springboot.webapp.exchange_app.model.CacheStatistics;
+import com.lili.springboot.webapp.exchange_app.model.CurrencyRegistry;
 import com.lili.springboot.webapp.exchange_app.model.ExchangeRateResponse;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
 @Service
 public class ExchangeRateService {
    private static final Logger logger = (Logger) LoggerFactory.getLogger(ExchangeRateService.class);
     
+    // Asking a provider for no particular symbol returns its whole table for the base
+    private static final Set<String> ALL_SYMBOLS = Set.of();
+    
     private final List<ExchangeRateApiClient> apiClients;
     private final MetricsService metricsService;
+    private final ExchangeRateProperties properties;
+    private final Scheduler providerScheduler;
+    
+    // Bounded cache of one full rate table per base currency: tables are fresh for cache-ttl, served
+    // stale for another stale-ttl while they are refreshed, and Caffeine's frequency-aware policy evicts
+    // the least valuable ones once the total number of cached rates exceeds cache-max-rates.
+    // Lookups never take a lock.
+    private final Cache<String, RateTable> cache;
+    
+    // Upstream fetches in progress, so concurrent misses for the same base share one fetch
+    private final Map<String, CompletableFuture<RateTable>> inFlight = new ConcurrentHashMap<>();
+    
+    // Bounds the upstream fetches running at once (max-concurrent-misses); joining one in flight is free
+    private final Semaphore fetchPermits;
+    
+    // Tables triangulated from the pivot, remembered together with the pivot table they came from
+    private record DerivedTable(RateTable pivot, RateTable direct, RateTable table) {}
+    private final Map<String, DerivedTable> derivedTables = new ConcurrentHashMap<>();
+    
+    // Per cached base: requests served since its last fetch and when it was last refreshed in the background
+    private static final class RefreshState {
+        final LongAdder hits = new LongAdder();
+        final AtomicLong lastAttemptNanos = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2);
+    }
+    private final Map<String, RefreshState> refreshStates = new ConcurrentHashMap<>();
     
-    // Simple in-memory cache
-    private final Map<CacheKey, ExchangeRateResponse> cache = new ConcurrentHashMap<>();
+    // Last response built for a request key, valid only while it was built from the current table
+    private record RateView(RateTable source, ExchangeRateResponse response) {}
+    private final Cache<CacheKey, RateView> views;
+    
+    // Isolation of each provider: its circuit breaker and a bulkhead bounding its calls in flight
+    private record ProviderGuard(CircuitBreaker breaker, Semaphore bulkhead) {}
+    private final Map<ExchangeRateApiClient, ProviderGuard> providerGuards = new IdentityHashMap<>();
+    
+    // Every table as it is cached, fanned out to the rate streams; a subscriber that can't keep up
+    // only misses values itself, it never slows down the fetch or the other subscribers
+    private final Sinks.Many<RateTable> tableUpdates = Sinks.many().multicast().directBestEffort();
     
     public ExchangeRateService(List<ExchangeRateApiClient> apiClients, MetricsService metricsService) {
+        this(apiClients, metricsService, new ExchangeRateProperties(),
+            Executors.newCachedThreadPool(Thread.ofPlatform().name("provider-fetch-", 0).daemon(true).factory()));
+    }
+    
+    @Autowired
+    public ExchangeRateService(List<ExchangeRateApiClient> apiClients, MetricsService metricsService,
+                               ExchangeRateProperties properties,
+                               @Qualifier("providerExecutor") Executor providerExecutor) {
         this.apiClients = apiClients;
         this.metricsService = metricsService;
-        logger.info("Initialized ExchangeRateService with {} API clients", apiClients.size());
+        this.properties = properties;
+        this.providerScheduler = Schedulers.fromExecutor(providerExecutor);
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(properties.getCacheMaxRates())
+            .weigher((String base, RateTable table) -> Math.max(1, table.size()))
+            .expireAfter(Expiry.writing((String base, RateTable table) -> remainingLifetime(table)))
+            .recordStats()
+            .build();
+        this.views = Caffeine.newBuilder()
+            .maximumSize(properties.getViewCacheSize())
+            .build();
+        this.fetchPermits = new Semaphore(properties.getMaxConcurrentMisses() > 0
+            ? properties.getMaxConcurrentMisses()
+            : Integer.MAX_VALUE);
+        for (ExchangeRateApiClient client : apiClients) {
+            CircuitBreaker breaker = new CircuitBreaker(client.getApiName(), properties);
+            providerGuards.put(client, new ProviderGuard(breaker, new Semaphore(properties.getProviderMaxConcurrentCalls())));
+        }
+        logger.info("Initialized ExchangeRateService with {} API clients ({} fetch, triangulation {})",
+            apiClients.size(), properties.getFetchMode(),
+            properties.isTriangulate() ? "via " + properties.getPivotCurrency() : "off");
+    }
+    
+    /**
+     * Hands the cache statistics and the provider circuit breakers to MetricsService, once this
+     * service is fully built rather than from its constructor.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        metricsService.registerCacheStatistics(this::getCacheStatistics);
+        metricsService.registerCacheSize(this::getCacheSize);
+        providerGuards.values().forEach(guard -> metricsService.registerCircuitBreaker(guard.breaker()));
     }
     
     public ExchangeRateResponse getExchangeRates(String baseCurrency, Set<String> symbols) {
-        // Normalize inputs
-        String normalizedBase = baseCurrency.toUpperCase();
-        Set<String> normalizedSymbols = symbols.stream()
-            .map(String::toUpperCase)
-            .collect(Collectors.toSet());
+        return getExchangeRates(CacheKey.of(baseCurrency, symbols));
+    }
+    
+    public ExchangeRateResponse getExchangeRates(CacheKey cacheKey) {
+        RateTable table = getRateTable(cacheKey.getBaseCurrency());
+        metricsService.incrementTotalQueries();
+        return project(cacheKey, table);
+    }
+    
+    // Table of the pivot currency; loading it registers every code the pivot has a rate for
+    public RateTable getPivotTable() {
+        return getRateTable(properties.getPivotCurrency());
+    }
+    
+    /**
+     * Every rate currently known for a base, blocking on the providers on a miss.
+     * Callers that need many rates from one consistent snapshot keep the returned table.
+     */
+    public RateTable getRateTable(String baseCurrency) {
+        String base = baseCurrency.toUpperCase();
         
         // Check cache first
-        CacheKey cacheKey = new CacheKey(normalizedBase, normalizedSymbols);
-        if (cache.containsKey(cacheKey)) {
-            logger.info("Cache hit for {}", cacheKey);
-            metricsService.incrementTotalQueries();
-            return cache.get(cacheKey);
+        long start = System.nanoTime();
+        RateTable table = cachedTable(base);
+        if (table != null) {
+            metricsService.recordCacheLatency(true, System.nanoTime() - start);
+            logger.debug("Cache hit for {}", base);
+            return table;
         }
-        
-        logger.info("Cache miss for {}, fetching from APIs", cacheKey);
-        
-        // Fetch from all APIs and collect results
-        Map<String, List<BigDecimal>> allRates = new HashMap<>();
-        
-        // Initialize the map with empty lists for each symbol
-        for (String symbol : normalizedSymbols) {
-            allRates.put(symbol, new ArrayList<>());
+        try {
+            table = resolveTable(base).join();
+            metricsService.recordCacheLatency(false, System.nanoTime() - start);
+            return table;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
-        
-        // Query each API
-        for (ExchangeRateApiClient client : apiClients) {
-            try {
-                logger.info("Fetching rates from {}", client.getApiName());
-                metricsService.incrementApiRequests(client.getApiName());
-                
-                Map<String, BigDecimal> rates = client.getExchangeRates(normalizedBase, normalizedSymbols);
-                
-                metricsService.incrementApiResponses(client.getApiName());
-                
-                // Collect rates for averaging
-                for (Map.Entry<String, BigDecimal> entry : rates.entrySet()) {
-                    String symbol = entry.getKey().toUpperCase();
-                    if (allRates.containsKey(symbol)) {
-                        allRates.get(symbol).add(entry.getValue());
+    }
+    
+    /**
+     * Non-blocking variant of getExchangeRates.
+     * A cache miss subscribes to the providers without holding the caller's thread until they answer.
+     */
+    public Mono<ExchangeRateResponse> getExchangeRatesReactive(String baseCurrency, Set<String> symbols) {
+        return getExchangeRatesReactive(CacheKey.of(baseCurrency, symbols));
+    }
+    
+    public Mono<ExchangeRateResponse> getExchangeRatesReactive(CacheKey cacheKey) {
+        return tableFor(cacheKey)
+            .map(rateTable -> {
+                metricsService.incrementTotalQueries();
+                return project(cacheKey, rateTable);
+            });
+    }
+    
+    /**
+     * Answers many queries at once, in their order. Each distinct base is resolved once for the
+     * whole batch, and bases derived from the pivot all share the one pivot fetch, so a batch costs
+     * at most one upstream call per provider per needed table. A query that fails or finds no rates
+     * gets an error result without affecting the others.
+     */
+    public Mono<List<BatchResult>> getExchangeRatesBatch(List<CacheKey> cacheKeys) {
+        return Mono.defer(() -> {
+            Map<String, Mono<RateTable>> tables = new HashMap<>();
+            List<Mono<BatchResult>> results = new ArrayList<>(cacheKeys.size());
+            for (CacheKey cacheKey : cacheKeys) {
+                Mono<RateTable> table = tables.computeIfAbsent(cacheKey.getBaseCurrency(),
+                    base -> tableFor(cacheKey).cache());
+                results.add(table
+                    .map(rateTable -> {
+                        metricsService.incrementTotalQueries();
+                        ExchangeRateResponse response = project(cacheKey, rateTable);
+                        return response.getRates().isEmpty()
+                            ? BatchResult.failure(cacheKey.getBaseCurrency(), "No exchange rates found")
+                            : BatchResult.success(response);
+                    })
+                    .onErrorResume(e -> {
+                        logger.error("Batch query for {} failed: {}", cacheKey, e.getMessage());
+                        return Mono.just(BatchResult.failure(cacheKey.getBaseCurrency(), "Failed to fetch exchange rates"));
+                    }));
+            }
+            return Flux.mergeSequential(results).collectList();
+        });
+    }
+    
+    // Every table fetched from the providers, as it is cached
+    public Flux<RateTable> tableUpdates() {
+        return tableUpdates.asFlux();
+    }
+    
+    /**
+     * Rates of the key as a stream: a snapshot of every requested symbol first, then, each time new
+     * upstream data is cached for the base (or for the pivot it is derived from), only the symbols
+     * whose rate changed. Updates are conflated per subscriber: a slow consumer skips intermediate
+     * tables and gets the latest one, with the delta computed against what it was last sent.
+     */
+    public Flux<ExchangeRateResponse> streamExchangeRates(CacheKey cacheKey) {
+        String baseCurrency = cacheKey.getBaseCurrency();
+        return Flux.defer(() -> {
+            AtomicReference<RateTable> lastTable = new AtomicReference<>();
+            AtomicBoolean snapshotSent = new AtomicBoolean();
+            Map<String, BigDecimal> sent = new HashMap<>();
+            
+            Flux<RateTable> updates = tableUpdates.asFlux()
+                .onBackpressureLatest()
+                .mapNotNull(updated -> tableFromUpdate(baseCurrency, updated));
+            
+            // Listen for updates while the snapshot is resolved so none is missed in between,
+            // and drop the table already sent or one older than it
+            return updates.mergeWith(tableFor(cacheKey))
+                .filter(table -> {
+                    RateTable last = lastTable.get();
+                    if (last != null && (table == last || table.getFetchedAt().isBefore(last.getFetchedAt()))) {
+                        return false;
                     }
-                }
-                
-            } catch (Exception e) {
-                logger.error("Failed to fetch rates from {}: {}", client.getApiName(), e.getMessage());
-                metricsService.incrementApiErrors(client.getApiName());
+                    lastTable.set(table);
+                    return true;
+                })
+                .<ExchangeRateResponse>handle((table, sink) -> {
+                    ExchangeRateResponse response = project(cacheKey, table);
+                    Map<String, BigDecimal> changed = new HashMap<>();
+                    response.getRates().forEach((symbol, rate) -> {
+                        if (!rate.equals(sent.put(symbol, rate))) {
+                            changed.put(symbol, rate);
+                        }
+                    });
+                    if (snapshotSent.compareAndSet(false, true)) {
+                        sink.next(response);
+                    } else if (!changed.isEmpty()) {
+                        sink.next(new ExchangeRateResponse(baseCurrency, changed));
+                    }
+                })
+                .doOnSubscribe(subscription -> metricsService.incrementActiveStreams())
+                .doFinally(signal -> metricsService.decrementActiveStreams());
+        });
+    }
+    
+    // The table a stream of the base should use after updated was cached, or null if it doesn't concern it
+    private RateTable tableFromUpdate(String baseCurrency, RateTable updated) {
+        if (isTriangulated(baseCurrency) && updated.getBase().equals(properties.getPivotCurrency())) {
+            return updated.hasRate(baseCurrency) ? derivedTable(baseCurrency, updated) : null;
+        }
+        if (!updated.getBase().equals(baseCurrency)) {
+            return null;
+        }
+        // A direct table of a derived base is merged into the derived rates rather than replacing them
+        if (isTriangulated(baseCurrency) && properties.isPreferDirectRates()) {
+            RateTable pivotTable = cache.asMap().get(properties.getPivotCurrency());
+            RateTable derived = pivotTable != null && pivotTable.hasRate(baseCurrency)
+                ? derivedTable(baseCurrency, pivotTable)
+                : null;
+            return derived != null ? derived : updated;
+        }
+        return updated;
+    }
+    
+    // The table of the key's base, from the cache or, on a miss, once the providers have answered
+    private Mono<RateTable> tableFor(CacheKey cacheKey) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            RateTable table = cachedTable(cacheKey.getBaseCurrency());
+            if (table != null) {
+                metricsService.recordCacheLatency(true, System.nanoTime() - start);
+                logger.debug("Cache hit for {}", cacheKey);
+                return Mono.just(table);
             }
+            // Cancelling one caller must not cancel the fetch other callers are waiting on
+            return Mono.fromFuture(resolveTable(cacheKey.getBaseCurrency()), true)
+                .doOnNext(resolved -> metricsService.recordCacheLatency(false, System.nanoTime() - start));
+        });
+    }
+    
+    // Bases other than the pivot are derived from the pivot table instead of being fetched
+    private boolean isTriangulated(String baseCurrency) {
+        return properties.isTriangulate() && !baseCurrency.equals(properties.getPivotCurrency());
+    }
+    
+    /**
+     * Table for a base that can be served without calling any provider, or null on a miss.
+     * With triangulation only the pivot table is looked up; a base the pivot doesn't know
+     * falls back to its own directly fetched table.
+     */
+    private RateTable cachedTable(String baseCurrency) {
+        if (!isTriangulated(baseCurrency)) {
+            return serve(baseCurrency, cache.getIfPresent(baseCurrency));
+        }
+        String pivot = properties.getPivotCurrency();
+        RateTable pivotTable = serve(pivot, cache.getIfPresent(pivot));
+        if (pivotTable == null) {
+            return null;
+        }
+        RateTable derived = pivotTable.hasRate(baseCurrency) ? derivedTable(baseCurrency, pivotTable) : null;
+        return derived != null ? derived : serve(baseCurrency, cache.asMap().get(baseCurrency));
+    }
+    
+    /**
+     * Stale-while-revalidate: a table past its TTL is still returned, and a background refresh is
+     * started so that a later request gets fresh rates. If the refresh fails the stale table keeps
+     * being served until stale-ttl runs out, degrading freshness instead of failing the request.
+     */
+    private RateTable serve(String baseCurrency, RateTable table) {
+        if (table == null) {
+            return null;
+        }
+        refreshStates.computeIfAbsent(baseCurrency, base -> new RefreshState()).hits.increment();
+        if (table.isOlderThan(properties.getCacheTtl())) {
+            logger.debug("Serving stale table for {} (age {} s)", baseCurrency, table.getAge().toSeconds());
+            metricsService.incrementStaleResponses();
+            refreshInBackground(baseCurrency);
+        }
+        return table;
+    }
+    
+    /**
+     * Refresh-ahead: refreshes hot tables shortly before their TTL runs out so that popular bases never
+     * reach the request path as a miss. A base is hot once refresh-min-hits requests were served from
+     * its current table.
+     */
+    @Scheduled(fixedDelayString = "${app.exchange-rate.refresh-check-interval:5000}")
+    public void refreshExpiringTables() {
+        Duration refreshAfter = properties.getCacheTtl().minus(properties.getRefreshAhead());
+        for (Map.Entry<String, RateTable> entry : cache.asMap().entrySet()) {
+            RefreshState state = refreshStates.get(entry.getKey());
+            if (state != null && state.hits.sum() >= properties.getRefreshMinHits()
+                    && entry.getValue().isOlderThan(refreshAfter)) {
+                refreshInBackground(entry.getKey());
+            }
+        }
+        // Forget bases whose table has been evicted
+        refreshStates.keySet().retainAll(cache.asMap().keySet());
+    }
+    
+    // Fetch a new table for a cached base without anyone waiting on it, at most once per refresh-retry-interval
+    private void refreshInBackground(String baseCurrency) {
+        RefreshState state = refreshStates.computeIfAbsent(baseCurrency, base -> new RefreshState());
+        long now = System.nanoTime();
+        long lastAttempt = state.lastAttemptNanos.get();
+        if (inFlight.containsKey(baseCurrency)
+                || now - lastAttempt < properties.getRefreshRetryInterval().toNanos()
+                || !state.lastAttemptNanos.compareAndSet(lastAttempt, now)) {
+            return;
         }
         
-        // Calculate average rates
-        Map<String, BigDecimal> averageRates = new HashMap<>();
-        for (Map.Entry<String, List<BigDecimal>> entry : allRates.entrySet()) {
-            String symbol = entry.getKey();
-            List<BigDecimal> rates = entry.getValue();
-            
-            if (!rates.isEmpty()) {
-                BigDecimal average = rates.stream()
-                    .reduce(BigDecimal.ZERO, BigDecimal::add)
-                    .divide(BigDecimal.valueOf(rates.size()), 6, RoundingMode.HALF_UP);
-                averageRates.put(symbol, average);
+        logger.info("Refreshing {} in the background", baseCurrency);
+        fetchTable(baseCurrency).whenComplete((table, error) -> {
+            if (error instanceof OverloadedException) {
+                // Keep serving the stale table and let the next request try again
+                logger.debug("Background refresh of {} deferred, too many upstream fetches running", baseCurrency);
+                state.lastAttemptNanos.compareAndSet(now, lastAttempt);
+                metricsService.incrementDeferredRefreshes();
+            } else if (error == null && !table.isEmpty()) {
+                metricsService.incrementBackgroundRefreshes();
             } else {
-                logger.warn("No rates found for symbol: {}", symbol);
+                // cacheTable never replaces a table with an empty one, the previous table stays in place
+                logger.warn("Background refresh of {} failed, keeping the cached table", baseCurrency);
+                metricsService.incrementFailedRefreshes();
             }
+        });
+    }
+    
+    // Miss path of cachedTable: loads the pivot (or the base itself) from the providers
+    private CompletableFuture<RateTable> resolveTable(String baseCurrency) {
+        if (!isTriangulated(baseCurrency)) {
+            return loadTable(baseCurrency);
+        }
+        return loadTable(properties.getPivotCurrency()).thenCompose(pivotTable -> {
+            RateTable derived = pivotTable.hasRate(baseCurrency) ? derivedTable(baseCurrency, pivotTable) : null;
+            return derived != null ? CompletableFuture.completedFuture(derived) : loadTable(baseCurrency);
+        });
+    }
+    
+    /**
+     * Cross rates of a base computed from the pivot table: base/symbol = (pivot/symbol) / (pivot/base),
+     * or null if the base can't be derived (the pivot's rate for it is zero).
+     * The result is derived once per pivot table and reused until the pivot is replaced.
+     * With prefer-direct-rates, rates of a fresh table fetched directly for the base win over derived ones,
+     * and the result is derived again whenever that direct table is replaced.
+     */
+    private RateTable derivedTable(String baseCurrency, RateTable pivotTable) {
+        RateTable direct = freshDirectTable(baseCurrency);
+        DerivedTable derived = derivedTables.get(baseCurrency);
+        if (derived != null && derived.pivot() == pivotTable && derived.direct() == direct) {
+            return derived.table();
+        }
+        
+        RateTable table = pivotTable.rebase(baseCurrency);
+        if (table != null && direct != null) {
+            // Stamped with the newer of the two, so streams see a direct update for an unchanged pivot as new
+            Instant fetchedAt = direct.getFetchedAt().isAfter(pivotTable.getFetchedAt())
+                ? direct.getFetchedAt()
+                : pivotTable.getFetchedAt();
+            table = new RateTable.Builder().putAll(table).putAll(direct).build(baseCurrency, fetchedAt);
         }
         
-        // Create response
-        ExchangeRateResponse response = new ExchangeRateResponse(normalizedBase, averageRates);
+        derivedTables.put(baseCurrency, new DerivedTable(pivotTable, direct, table));
+        return table;
+    }
+    
+    /**
+     * With prefer-direct-rates, the table fetched directly for a derived base if it is within its TTL.
+     * Otherwise the direct table is fetched in the background and the derived rates are served meanwhile,
+     * so a request never waits for it. Null if there is no fresh direct table or the option is off.
+     */
+    private RateTable freshDirectTable(String baseCurrency) {
+        if (!properties.isPreferDirectRates()) {
+            return null;
+        }
+        RateTable direct = cache.asMap().get(baseCurrency);
+        if (direct != null && !direct.isOlderThan(properties.getCacheTtl())) {
+            return direct;
+        }
+        refreshInBackground(baseCurrency);
+        return null;
+    }
+    
+    /**
+     * Single-flight load of a missing base table.
+     * The first caller starts the upstream fetch; callers that miss the same base while it is running
+     * get the same future instead of querying every provider again. The base leaves the in-flight map
+     * only after its table is cached, so no caller can slip between the two and fetch twice.
+     */
+    private CompletableFuture<RateTable> loadTable(String baseCurrency) {
+        CompletableFuture<RateTable> load = new CompletableFuture<>();
+        CompletableFuture<RateTable> existing = inFlight.putIfAbsent(baseCurrency, load);
+        if (existing != null) {
+            logger.debug("Cache miss for {}, joining fetch already in flight", baseCurrency);
+            metricsService.incrementCoalescedQueries();
+            return existing;
+        }
         
-        // Cache the result
-        cache.put(cacheKey, response);
-        metricsService.incrementTotalQueries();
+        // The previous fetch for this base may have completed between our cache lookup and putIfAbsent
+        // (read through asMap so the caller's miss isn't counted twice in the statistics)
+        RateTable cached = cache.asMap().get(baseCurrency);
+        if (cached != null) {
+            inFlight.remove(baseCurrency, load);
+            load.complete(cached);
+            return load;
+        }
+        
+        if (!admitFetch(baseCurrency, load)) {
+            logger.warn("Shedding cache miss for {}, {} upstream fetches already running", baseCurrency, properties.getMaxConcurrentMisses());
+            metricsService.incrementShedMisses();
+            return load;
+        }
+        logger.info("Cache miss for {}, fetching full rate table from APIs", baseCurrency);
+        return startFetch(baseCurrency, load);
+    }
+    
+    // Background refresh: replaces the cached table even if it is still there, sharing any fetch in flight
+    private CompletableFuture<RateTable> fetchTable(String baseCurrency) {
+        CompletableFuture<RateTable> load = new CompletableFuture<>();
+        CompletableFuture<RateTable> existing = inFlight.putIfAbsent(baseCurrency, load);
+        if (existing != null) {
+            return existing;
+        }
+        return admitFetch(baseCurrency, load) ? startFetch(baseCurrency, load) : load;
+    }
+    
+    /**
+     * Load shedding: takes one of the max-concurrent-misses fetch permits. Without one the load fails
+     * at once with an OverloadedException instead of queueing more work on the providers.
+     */
+    private boolean admitFetch(String baseCurrency, CompletableFuture<RateTable> load) {
+        if (fetchPermits.tryAcquire()) {
+            return true;
+        }
+        inFlight.remove(baseCurrency, load);
+        load.completeExceptionally(new OverloadedException(baseCurrency, properties.getOverloadRetryAfter()));
+        return false;
+    }
+    
+    // Runs an admitted fetch, its permit is released as soon as the providers are done
+    private CompletableFuture<RateTable> startFetch(String baseCurrency, CompletableFuture<RateTable> load) {
+        fetchFromProviders(baseCurrency, ALL_SYMBOLS)
+            .map(results -> cacheTable(baseCurrency, results))
+            .subscribe(
+                table -> {
+                    fetchPermits.release();
+                    inFlight.remove(baseCurrency, load);
+                    load.complete(table);
+                },
+                error -> {
+                    logger.error("Failed to load rates for {}: {}", baseCurrency, error.getMessage());
+                    fetchPermits.release();
+                    inFlight.remove(baseCurrency, load);
+                    load.completeExceptionally(error);
+                });
+        return load;
+    }
+    
+    /**
+     * Pick the requested symbols out of the base table, rounded to the published precision.
+     * The result is remembered per key together with the table it came from, so repeated hits
+     * on the same table return the same response without building it again.
+     */
+    private ExchangeRateResponse project(CacheKey cacheKey, RateTable table) {
+        RateView view = views.getIfPresent(cacheKey);
+        if (view != null && view.source() == table) {
+            return view.response();
+        }
+        
+        Map<String, BigDecimal> rates = new HashMap<>();
+        for (int ordinal = cacheKey.nextSymbol(0); ordinal >= 0; ordinal = cacheKey.nextSymbol(ordinal + 1)) {
+            addRate(rates, CurrencyRegistry.code(ordinal), table.getRate(ordinal));
+        }
+        for (String symbol : cacheKey.getUnresolvedSymbols()) {
+            addRate(rates, symbol, table.getRate(symbol));
+        }
         
-        logger.info("Successfully fetched and cached rates for {}", cacheKey);
+        ExchangeRateResponse response = new ExchangeRateResponse(cacheKey.getBaseCurrency(), Collections.unmodifiableMap(rates));
+        // Strong validator: a request key always selects the same symbols, so the table version identifies the body
+        response.setEtag("\"" + Long.toHexString(table.getVersion()) + "\"");
+        response.setFreshUntil(table.getFetchedAt().plus(properties.getCacheTtl()));
+        views.put(cacheKey, new RateView(table, response));
         return response;
     }
     
+    private void addRate(Map<String, BigDecimal> rates, String symbol, BigDecimal rate) {
+        if (rate != null) {
+            rates.put(symbol, rate.setScale(6, RoundingMode.HALF_UP));
+        } else {
+            logger.warn("No rates found for symbol: {}", symbol);
+        }
+    }
+    
+    // Average the provider results into one table and cache it
+    private RateTable cacheTable(String baseCurrency, List<Map<String, BigDecimal>> results) {
+        // Calculate average rates, keeping full precision so cross rates derived from them stay exact;
+        // rounding to 6 decimals happens only when a response is built
+        RateAverager averager = new RateAverager();
+        results.forEach(averager::addAll);
+        RateTable table = averager.average(baseCurrency, Instant.now());
+        
+        // Don't cache an empty table, otherwise a provider outage would be served for a whole TTL
+        if (table.isEmpty()) {
+            logger.warn("No provider returned rates for {}", baseCurrency);
+            return table;
+        }
+        
+        // Providers have rates for this base, so it is a currency request input may now refer to
+        CurrencyRegistry.register(baseCurrency);
+        cache.put(baseCurrency, table);
+        RefreshState state = refreshStates.get(baseCurrency);
+        if (state != null) {
+            state.hits.reset();
+        }
+        // The table is cached already: a failed emit only costs the streams this update, never the load
+        Sinks.EmitResult emitted = tableUpdates.tryEmitNext(table);
+        if (emitted.isFailure() && emitted != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            logger.warn("Rate streams missed the update of {}: {}", baseCurrency, emitted);
+        }
+        logger.info("Successfully fetched and cached {}", table);
+        return table;
+    }
+    
+    /**
+     * Query every API and collect the results that arrived in time.
+     * In parallel mode all providers are subscribed at once, in sequential mode one after the other.
+     * Each provider is bounded by its own deadline; late providers are counted as timeouts and
+     * failing ones as errors, and both are left out of the average.
+     */
+    private Mono<List<Map<String, BigDecimal>>> fetchFromProviders(String baseCurrency, Set<String> symbols) {
+        Flux<ExchangeRateApiClient> clients = Flux.fromIterable(apiClients);
+        Flux<Map<String, BigDecimal>> results = properties.getFetchMode() == FetchMode.PARALLEL
+            ? clients.flatMap(client -> fetchFromProvider(client, baseCurrency, symbols))
+            : clients.concatMap(client -> fetchFromProvider(client, baseCurrency, symbols));
+        return results.collectList();
+    }
+    
+    private Mono<Map<String, BigDecimal>> fetchFromProvider(ExchangeRateApiClient client,
+                                                           String baseCurrency, Set<String> symbols) {
+        String apiName = client.getApiName();
+        Duration deadline = properties.getProviderTimeout(apiName);
+        ProviderGuard guard = providerGuards.get(client);
+        
+        return Mono.defer(() -> {
+                // An open breaker or a full bulkhead skips the provider at once instead of adding its timeout to the miss
+                if (!guard.breaker().tryAcquirePermission()) {
+                    logger.debug("Circuit breaker of {} is {}, skipping it", apiName, guard.breaker().getState());
+                    metricsService.incrementApiRejections(apiName);
+                    return Mono.empty();
+                }
+                if (!guard.bulkhead().tryAcquire()) {
+                    logger.warn("{} already has {} calls in flight, skipping it", apiName, properties.getProviderMaxConcurrentCalls());
+                    guard.breaker().onIgnored();
+                    metricsService.incrementApiRejections(apiName);
+                    return Mono.empty();
+                }
+                
+                logger.info("Fetching rates from {} (deadline {} ms)", apiName, deadline.toMillis());
+                metricsService.incrementApiRequests(apiName);
+                long start = System.nanoTime();
+                
+                // Reactive clients don't hold a thread while waiting, blocking ones run on the provider executor
+                Mono<Map<String, BigDecimal>> call = client instanceof ReactiveExchangeRateApiClient reactiveClient
+                    ? reactiveClient.fetchExchangeRates(baseCurrency, symbols)
+                    : Mono.fromCallable(() -> client.getExchangeRates(baseCurrency, symbols)).subscribeOn(providerScheduler);
+                return call
+                    .defaultIfEmpty(Map.of())
+                    .timeout(deadline)
+                    .doOnNext(rates -> {
+                        long elapsed = System.nanoTime() - start;
+                        guard.breaker().onSuccess(Duration.ofNanos(elapsed));
+                        metricsService.recordApiLatency(apiName, elapsed);
+                        metricsService.incrementApiResponses(apiName);
+                    })
+                    .doOnError(e -> guard.breaker().onError())
+                    .doOnCancel(() -> guard.breaker().onIgnored())
+                    .doFinally(signal -> guard.bulkhead().release());
+            })
+            .onErrorResume(TimeoutException.class, e -> {
+                logger.warn("{} did not answer within {} ms, skipping it", apiName, deadline.toMillis());
+                metricsService.incrementApiTimeouts(apiName);
+                return Mono.empty();
+            })
+            .onErrorResume(e -> {
+                logger.error("Failed to fetch rates from {}: {}", apiName, e.getMessage());
+                metricsService.incrementApiErrors(apiName);
+                return Mono.empty();
+            });
+    }
+    
+    // Tables are kept for ttl + stale-ttl from the time they were fetched, not from when they were cached
+    private Duration remainingLifetime(RateTable table) {
+        Duration remaining = properties.getCacheTtl().plus(properties.getStaleTtl()).minus(table.getAge());
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+    
+    // Tables fetched from the providers that are currently cached, derived tables excluded
+    public List<RateTable> getCachedTables() {
+        return List.copyOf(cache.asMap().values());
+    }
+    
+    /**
+     * Puts previously cached tables back, e.g. from a snapshot written before a restart. Each table
+     * keeps its original age: it is served stale (and refreshed) or dropped exactly as if it had never
+     * left the cache, and a newer table already cached for the base is kept. Returns the number restored.
+     */
+    public int restoreTables(Collection<RateTable> tables) {
+        int restored = 0;
+        for (RateTable table : tables) {
+            if (table.isEmpty() || remainingLifetime(table).isZero()) {
+                continue;
+            }
+            CurrencyRegistry.register(table.getBase());
+            RateTable cached = cache.asMap().merge(table.getBase(), table,
+                (existing, candidate) -> existing.getFetchedAt().isBefore(candidate.getFetchedAt()) ? candidate : existing);
+            if (cached == table) {
+                restored++;
+            }
+        }
+        logger.info("Restored {} of {} cached tables", restored, tables.size());
+        return restored;
+    }
+    
     // Method to clear cache (useful for testing or manual cache management)
     public void clearCache() {
-        cache.clear();
+        cache.invalidateAll();
+        derivedTables.clear();
+        views.invalidateAll();
+        refreshStates.clear();
         logger.info("Cache cleared");
     }
     
     // Method to get cache size (useful for monitoring)
     public int getCacheSize() {
-        return cache.size();
+        return (int) cache.estimatedSize();
+    }
+    
+    public CacheStatistics getCacheStatistics() {
+        CacheStats stats = cache.stats();
+        CacheStatistics statistics = new CacheStatistics(cache.estimatedSize(), stats.hitCount(),
+            stats.missCount(), stats.hitRate(), stats.evictionCount());
+        
+        // How far behind the providers the cache is
+        long staleEntries = 0;
+        Duration oldest = Duration.ZERO;
+        for (RateTable table : cache.asMap().values()) {
+            Duration age = table.getAge();
+            if (age.compareTo(properties.getCacheTtl()) > 0) {
+                staleEntries++;
+            }
+            if (age.compareTo(oldest) > 0) {
+                oldest = age;
+            }
+        }
+        statistics.setStaleEntries(staleEntries);
+        statistics.setOldestEntryAgeSeconds(oldest.toSeconds());
+        return statistics;
     }
 
 }
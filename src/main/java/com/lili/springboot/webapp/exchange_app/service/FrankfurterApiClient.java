@@ -1,66 +1,93 @@
 package com.lili.springboot.webapp.exchange_app.service;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lili.springboot.webapp.exchange_app.config.ProviderWebClientFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Service
-public class FrankfurterApiClient implements ExchangeRateApiClient {
+public class FrankfurterApiClient implements ReactiveExchangeRateApiClient {
+    private static final Logger logger = LoggerFactory.getLogger(FrankfurterApiClient.class);
+
     private final WebClient webClient;
-    private final ObjectMapper objectMapper;
-    
+    private final JsonRateParser rateParser;
+    // Validators of earlier responses, to ask for the same rates again with a conditional request
+    private final ConditionalRateFetcher conditionalFetcher = new ConditionalRateFetcher();
+
    public FrankfurterApiClient(WebClient.Builder webClientBuilder) {
+    this(webClientBuilder, new JsonRateParser(new ObjectMapper()));
+    }
+
+    public FrankfurterApiClient(WebClient.Builder webClientBuilder, JsonRateParser rateParser) {
     this.webClient = webClientBuilder
         .build();  // ← Sin .baseUrl(), usa la URL que ya viene en el builder
-    this.objectMapper = new ObjectMapper();
+    this.rateParser = rateParser;
+    }
+
+    // Base URL, connection pool and timeouts come from the provider's transport settings
+    @Autowired
+    public FrankfurterApiClient(ProviderWebClientFactory webClientFactory, JsonRateParser rateParser) {
+        this(webClientFactory.builder("frankfurter"), rateParser);
     }
-    
+
     @Override
     public String getApiName() {
         return "frankfurter";
     }
-    
+
+    /**
+     * Blocking variant of fetchExchangeRates. Failures are thrown, not turned into an empty map,
+     * so the caller can count them and feed them to the provider's circuit breaker.
+     */
     @Override
     public Map<String, BigDecimal> getExchangeRates(String baseCurrency, Set<String> symbols) {
-        try {
-            String symbolsParam = String.join(",", symbols);
-            
-            String jsonResponse = webClient.get()
-                .uri("/latest?base={base}&symbols={symbols}", baseCurrency, symbolsParam)
-                .retrieve()
-                .bodyToMono(String.class)
-                .block();
-            
-            // Parseamos el JSON response
-            Map<String, BigDecimal> rates = new HashMap<>();
-            if (jsonResponse != null && !jsonResponse.isEmpty()) {
-                JsonNode rootNode = objectMapper.readTree(jsonResponse);
-                JsonNode ratesNode = rootNode.get("rates");
-                
-                if (ratesNode != null) {
-                    for (String symbol : symbols) {
-                        JsonNode rateNode = ratesNode.get(symbol);
-                        if (rateNode != null) {
-                            rates.put(symbol, new BigDecimal(rateNode.asText()));
-                        }
-                    }
-                }
-            }
-            
-            System.out.println("Frankfurter API response: " + jsonResponse);
-            return rates;
-            
-        } catch (Exception e) {
-            System.err.println("Error fetching from Frankfurter: " + e.getMessage());
-            return new HashMap<>();
-        }
+        Map<String, BigDecimal> rates = fetchExchangeRates(baseCurrency, symbols)
+            .doOnError(e -> logger.error("Error fetching from Frankfurter: {}", e.getMessage()))
+            .block();
+        return rates != null ? rates : new HashMap<>();
+    }
+
+    @Override
+    public Mono<Map<String, BigDecimal>> fetchExchangeRates(String baseCurrency, Set<String> symbols) {
+        WebClient.RequestHeadersSpec<?> request = symbols.isEmpty()
+            ? webClient.get().uri("/latest?base={base}", baseCurrency)
+            : webClient.get().uri("/latest?base={base}&symbols={symbols}", baseCurrency, String.join(",", symbols));
+
+        // Las rates se leen del body a medida que llega, sin armar el String ni el JsonNode completo
+        return conditionalFetcher.fetch(request, baseCurrency, symbols, body -> rateParser.parseRates(body, "rates", symbols));
+    }
+
+    /**
+     * Daily reference rates of a base for every business day between start and end, in date order.
+     * Frankfurter answers the whole range in one time series response.
+     */
+    public Mono<Map<LocalDate, Map<String, BigDecimal>>> fetchRateSeries(String baseCurrency, LocalDate start, LocalDate end) {
+        Flux<DataBuffer> body = webClient.get()
+            .uri("/{start}..{end}?base={base}", start, end, baseCurrency)
+            .retrieve()
+            .bodyToFlux(DataBuffer.class);
+
+        return rateParser.parseRateSeries(body, "rates")
+            .map(series -> {
+                Map<LocalDate, Map<String, BigDecimal>> days = new LinkedHashMap<>();
+                series.forEach((day, rates) -> days.put(LocalDate.parse(day), rates));
+                return days;
+            });
     }
 
 }
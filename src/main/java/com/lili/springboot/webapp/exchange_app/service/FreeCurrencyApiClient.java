@@ -5,63 +5,65 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lili.springboot.webapp.exchange_app.config.ProviderWebClientFactory;
+
+import reactor.core.publisher.Mono;
 
 @Service
-public class FreeCurrencyApiClient implements ExchangeRateApiClient {
-    
+public class FreeCurrencyApiClient implements ReactiveExchangeRateApiClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(FreeCurrencyApiClient.class);
+
    private final WebClient webClient;
-    private final ObjectMapper objectMapper;
-    
+    private final JsonRateParser rateParser;
+    // Validators of earlier responses, to ask for the same rates again with a conditional request
+    private final ConditionalRateFetcher conditionalFetcher = new ConditionalRateFetcher();
+
     public FreeCurrencyApiClient(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder
-            .baseUrl("https://cdn.jsdelivr.net/npm/@fawazahmed0/currency-api@latest/v1/currencies")
-            .build();
-        this.objectMapper = new ObjectMapper();
+        this(webClientBuilder, new JsonRateParser(new ObjectMapper()));
     }
-    
+
+    public FreeCurrencyApiClient(WebClient.Builder webClientBuilder, JsonRateParser rateParser) {
+        this.webClient = webClientBuilder.build();
+        this.rateParser = rateParser;
+    }
+
+    // Base URL, connection pool and timeouts come from the provider's transport settings
+    @Autowired
+    public FreeCurrencyApiClient(ProviderWebClientFactory webClientFactory, JsonRateParser rateParser) {
+        this(webClientFactory.builder("freeCurrencyRates"), rateParser);
+    }
+
     @Override
     public String getApiName() {
         return "freeCurrencyRates";
     }
-    
+
+    /**
+     * Blocking variant of fetchExchangeRates. Failures are thrown, not turned into an empty map,
+     * so the caller can count them and feed them to the provider's circuit breaker.
+     */
     @Override
     public Map<String, BigDecimal> getExchangeRates(String baseCurrency, Set<String> symbols) {
-        try {
-            String jsonResponse = webClient.get()
-                .uri("/{baseCurrency}.json", baseCurrency.toLowerCase())
-                .retrieve()
-                .bodyToMono(String.class)
-                .block();
-            
-            // Parseamos el JSON response
-            Map<String, BigDecimal> rates = new HashMap<>();
-            if (jsonResponse != null && !jsonResponse.isEmpty()) {
-                JsonNode rootNode = objectMapper.readTree(jsonResponse);
-                
-                // Esta API tiene estructura: {"date": "2024-01-01", "eur": {"usd": 1.08, "nzd": 1.6}}
-                JsonNode baseCurrencyNode = rootNode.get(baseCurrency.toLowerCase());
-                
-                if (baseCurrencyNode != null) {
-                    for (String symbol : symbols) {
-                        JsonNode rateNode = baseCurrencyNode.get(symbol.toLowerCase());
-                        if (rateNode != null) {
-                            rates.put(symbol.toUpperCase(), new BigDecimal(rateNode.asText()));
-                        }
-                    }
-                }
-            }
-            
-            System.out.println("Free Currency API response: " + jsonResponse);
-            return rates;
-            
-        } catch (Exception e) {
-            System.err.println("Error fetching from Free Currency API: " + e.getMessage());
-            return new HashMap<>();
-        }
+        Map<String, BigDecimal> rates = fetchExchangeRates(baseCurrency, symbols)
+            .doOnError(e -> logger.error("Error fetching from Free Currency API: {}", e.getMessage()))
+            .block();
+        return rates != null ? rates : new HashMap<>();
+    }
+
+    @Override
+    public Mono<Map<String, BigDecimal>> fetchExchangeRates(String baseCurrency, Set<String> symbols) {
+        // Esta API tiene estructura: {"date": "2024-01-01", "eur": {"usd": 1.08, "nzd": 1.6}}
+        // y lista cientos de monedas, solo se convierten las pedidas
+        // jsDelivr sends an ETag, an unchanged file is answered with a 304 and not parsed again
+        return conditionalFetcher.fetch(webClient.get().uri("/{baseCurrency}.json", baseCurrency.toLowerCase()),
+            baseCurrency, symbols, body -> rateParser.parseRates(body, baseCurrency.toLowerCase(), symbols));
     }
-}
\ No newline at end of file
+}
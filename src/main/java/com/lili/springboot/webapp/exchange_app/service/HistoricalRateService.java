@@ -0,0 +1,211 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.CacheKey;
+import com.lili.springboot.webapp.exchange_app.model.CurrencyRegistry;
+import com.lili.springboot.webapp.exchange_app.model.ExchangeRateResponse;
+import com.lili.springboot.webapp.exchange_app.model.HistoricalRatesResponse;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Historical rates served from the local HistoricalRateStore, never from upstream.
+ *
+ * The store is filled in the background: Frankfurter's daily reference rates are backfilled
+ * for the history bases, and the first table fetched each day by ExchangeRateService is recorded
+ * for days Frankfurter hasn't published (yet). Once Frankfurter publishes such a day, the next
+ * backfill appends its reference rates, which supersede the recorded live table. Bases without
+ * history of their own are derived from the pivot's history when triangulation is enabled, the
+ * same way live cross rates are.
+ */
+@Service
+public class HistoricalRateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoricalRateService.class);
+
+    // Days before the last stored one that every backfill fetches again, so a live table recorded
+    // before Frankfurter published the day (even over a long holiday weekend) gets replaced
+    private static final int REPUBLISH_DAYS = 7;
+
+    private final HistoricalRateStore store;
+    private final FrankfurterApiClient frankfurterApiClient;
+    private final ExchangeRateService exchangeRateService;
+    private final ExchangeRateProperties properties;
+
+    private Disposable recorder;
+
+    public HistoricalRateService(HistoricalRateStore store, FrankfurterApiClient frankfurterApiClient,
+                                 ExchangeRateService exchangeRateService, ExchangeRateProperties properties) {
+        this.store = store;
+        this.frankfurterApiClient = frankfurterApiClient;
+        this.exchangeRateService = exchangeRateService;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void startRecording() {
+        Set<String> bases = historyBases();
+        recorder = exchangeRateService.tableUpdates()
+            .filter(table -> bases.contains(table.getBase()))
+            .onBackpressureLatest()
+            .publishOn(Schedulers.boundedElastic())
+            .subscribe(this::record, e -> logger.error("History recording stopped: {}", e.getMessage()));
+    }
+
+    @PreDestroy
+    public void stopRecording() {
+        if (recorder != null) {
+            recorder.dispose();
+        }
+    }
+
+    /**
+     * Rates of the key in effect on a date: that day's rates, or the last published before it
+     * (weekends and holidays). Returns null when no history covers the date.
+     */
+    public ExchangeRateResponse getExchangeRates(CacheKey cacheKey, LocalDate date) {
+        String base = cacheKey.getBaseCurrency();
+        RateTable table = store.findOnOrBefore(base, date);
+        if (table == null && derivesFromPivot(base)) {
+            RateTable pivotTable = store.findOnOrBefore(properties.getPivotCurrency(), date);
+            table = pivotTable != null ? pivotTable.rebase(base) : null;
+        }
+        if (table == null) {
+            return null;
+        }
+
+        ExchangeRateResponse response = new ExchangeRateResponse(base, project(cacheKey, table));
+        response.setDate(LocalDate.ofInstant(table.getFetchedAt(), ZoneOffset.UTC));
+        return response;
+    }
+
+    /**
+     * Rates of the key for every published day between from and to. Throws IllegalArgumentException
+     * for a reversed range or one longer than history-max-range-days.
+     */
+    public HistoricalRatesResponse getExchangeRates(CacheKey cacheKey, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Range ends before it starts");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= properties.getHistoryMaxRangeDays()) {
+            throw new IllegalArgumentException("Range longer than " + properties.getHistoryMaxRangeDays() + " days");
+        }
+
+        String base = cacheKey.getBaseCurrency();
+        Map<LocalDate, RateTable> tables = store.findRange(base, from, to);
+        boolean derived = tables.isEmpty() && derivesFromPivot(base);
+        if (derived) {
+            tables = store.findRange(properties.getPivotCurrency(), from, to);
+        }
+
+        Map<LocalDate, Map<String, BigDecimal>> rates = new LinkedHashMap<>();
+        for (Map.Entry<LocalDate, RateTable> day : tables.entrySet()) {
+            RateTable table = derived ? day.getValue().rebase(base) : day.getValue();
+            if (table != null) {
+                rates.put(day.getKey(), project(cacheKey, table));
+            }
+        }
+        return new HistoricalRatesResponse(base, from, to, rates);
+    }
+
+    /**
+     * Appends the days Frankfurter published since shortly before the last stored one, or the last
+     * history-backfill-days for a base without history. Days already stored with the same rates are
+     * skipped, so re-fetching them doesn't grow the store. Runs shortly after startup and then periodically.
+     */
+    @Scheduled(initialDelay = 10_000, fixedDelayString = "${app.exchange-rate.history-backfill-interval:21600000}")
+    public void backfill() {
+        if (properties.getHistoryBackfillDays() <= 0) {
+            return;
+        }
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        for (String base : historyBases()) {
+            LocalDate last = store.lastDate(base);
+            LocalDate start = last != null ? last.minusDays(REPUBLISH_DAYS) : today.minusDays(properties.getHistoryBackfillDays());
+            try {
+                Map<LocalDate, Map<String, BigDecimal>> series = frankfurterApiClient.fetchRateSeries(base, start, today).block();
+                SortedMap<LocalDate, RateTable> tables = new TreeMap<>();
+                if (series != null) {
+                    series.forEach((day, rates) -> {
+                        RateTable table = RateTable.of(base, rates, day.atStartOfDay().toInstant(ZoneOffset.UTC));
+                        RateTable stored = store.find(base, day);
+                        if (stored == null || stored.getVersion() != table.getVersion()) {
+                            tables.put(day, table);
+                        }
+                    });
+                }
+                store.appendAll(base, tables);
+                logger.info("Backfilled {} days of {} history from {}", tables.size(), base, start);
+            } catch (RuntimeException e) {
+                logger.error("Failed to backfill {} history from {}: {}", base, start, e.getMessage());
+            }
+        }
+    }
+
+    // Keeps the first live table of a day that has no rates stored yet, until backfill replaces it
+    private void record(RateTable table) {
+        LocalDate day = LocalDate.ofInstant(table.getFetchedAt(), ZoneOffset.UTC);
+        try {
+            if (store.find(table.getBase(), day) == null) {
+                store.append(table.getBase(), day, table);
+                logger.debug("Recorded {} as {} history", table, day);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to record {} history: {}", table.getBase(), e.getMessage());
+        }
+    }
+
+    private boolean derivesFromPivot(String base) {
+        return properties.isTriangulate() && !base.equals(properties.getPivotCurrency());
+    }
+
+    private Set<String> historyBases() {
+        Set<String> bases = new LinkedHashSet<>();
+        bases.add(properties.getPivotCurrency());
+        for (String base : properties.getHistoryBases()) {
+            bases.add(base.trim().toUpperCase(Locale.ROOT));
+        }
+        return bases;
+    }
+
+    private Map<String, BigDecimal> project(CacheKey cacheKey, RateTable table) {
+        Map<String, BigDecimal> rates = new HashMap<>();
+        for (int ordinal = cacheKey.nextSymbol(0); ordinal >= 0; ordinal = cacheKey.nextSymbol(ordinal + 1)) {
+            addRate(rates, CurrencyRegistry.code(ordinal), table.getRate(ordinal));
+        }
+        for (String symbol : cacheKey.getUnresolvedSymbols()) {
+            addRate(rates, symbol, table.getRate(symbol));
+        }
+        return Collections.unmodifiableMap(rates);
+    }
+
+    private void addRate(Map<String, BigDecimal> rates, String symbol, BigDecimal rate) {
+        if (rate != null) {
+            rates.put(symbol, rate.setScale(6, RoundingMode.HALF_UP));
+        }
+    }
+}
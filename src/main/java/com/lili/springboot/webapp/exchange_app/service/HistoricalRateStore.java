@@ -0,0 +1,337 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+
+/**
+ * Append-only, memory-mapped store of one rate table per base and day.
+ *
+ * Each base has a directory of yearly segment files ("EUR/2024.seg"). A record is [int epochDay]
+ * followed by the table in RateTableCodec form, the same fixed-point values RateTable keeps in memory. Records are only ever
+ * appended; writing a day again supersedes the earlier record. Reads go through a read-only mapping
+ * of the segment, the heap only holds a day-of-year to offset index per segment, so years of history
+ * for every base cost a few kilobytes each.
+ */
+@Component
+public class HistoricalRateStore implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoricalRateStore.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    // Epoch day of the record, followed by the table in RateTableCodec form
+    private static final int RECORD_HEADER = Integer.BYTES;
+    private static final Pattern CURRENCY_CODE = Pattern.compile("[A-Z0-9]{2,16}");
+
+    // Frankfurter publishes no rates on weekends and holidays, a date resolves to the last published day this far back
+    private static final int MAX_LOOKBACK_DAYS = 7;
+
+    private final Path directory;
+    private final Map<String, BaseHistory> bases = new ConcurrentHashMap<>();
+
+    public HistoricalRateStore(ExchangeRateProperties properties) {
+        this.directory = Path.of(properties.getHistoryDirectory());
+    }
+
+    /**
+     * Appends one table per date for a base, flushing each touched segment once.
+     */
+    public void appendAll(String baseCurrency, SortedMap<LocalDate, RateTable> tables) {
+        if (tables.isEmpty()) {
+            return;
+        }
+        BaseHistory history = history(baseCurrency, true);
+        history.lock.lock();
+        try {
+            Segment segment = null;
+            for (Map.Entry<LocalDate, RateTable> entry : tables.entrySet()) {
+                int year = entry.getKey().getYear();
+                if (segment == null || segment.year != year) {
+                    if (segment != null) {
+                        segment.publish();
+                    }
+                    segment = history.segment(year, true);
+                }
+                segment.append(entry.getKey(), entry.getValue());
+            }
+            segment.publish();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append history of " + baseCurrency, e);
+        } finally {
+            history.lock.unlock();
+        }
+        logger.debug("Appended {} days of {} history", tables.size(), baseCurrency);
+    }
+
+    public void append(String baseCurrency, LocalDate date, RateTable table) {
+        appendAll(baseCurrency, new TreeMap<>(Map.of(date, table)));
+    }
+
+    // Table stored for exactly this day, or null
+    public RateTable find(String baseCurrency, LocalDate date) {
+        BaseHistory history = history(baseCurrency, false);
+        Segment segment = history != null ? history.segment(date.getYear(), false) : null;
+        return segment != null ? segment.read(date) : null;
+    }
+
+    /**
+     * Table in effect on a date: the one stored for that day, or the last one published
+     * up to a week before it. Returns null if there is none.
+     */
+    public RateTable findOnOrBefore(String baseCurrency, LocalDate date) {
+        for (int back = 0; back <= MAX_LOOKBACK_DAYS; back++) {
+            RateTable table = find(baseCurrency, date.minusDays(back));
+            if (table != null) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    // Every stored day between from and to (inclusive), in date order
+    public Map<LocalDate, RateTable> findRange(String baseCurrency, LocalDate from, LocalDate to) {
+        BaseHistory history = history(baseCurrency, false);
+        Map<LocalDate, RateTable> tables = new LinkedHashMap<>();
+        if (history == null) {
+            return tables;
+        }
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            Segment segment = history.segment(date.getYear(), false);
+            if (segment == null) {
+                // Nothing stored for the rest of this year
+                date = LocalDate.of(date.getYear(), 12, 31);
+                continue;
+            }
+            RateTable table = segment.read(date);
+            if (table != null) {
+                tables.put(date, table);
+            }
+        }
+        return tables;
+    }
+
+    // Most recent day stored for a base, or null if it has no history
+    public LocalDate lastDate(String baseCurrency) {
+        BaseHistory history = history(baseCurrency, false);
+        if (history == null) {
+            return null;
+        }
+        for (Segment segment : history.segments.descendingMap().values()) {
+            LocalDate last = segment.lastDate();
+            if (last != null) {
+                return last;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void destroy() {
+        for (BaseHistory history : bases.values()) {
+            for (Segment segment : history.segments.values()) {
+                segment.close();
+            }
+        }
+        bases.clear();
+    }
+
+    /**
+     * History of a base, or null when reading a base that has nothing stored: request input
+     * never creates entries nor reaches outside the store directory.
+     */
+    private BaseHistory history(String baseCurrency, boolean create) {
+        String base = baseCurrency.toUpperCase(Locale.ROOT);
+        BaseHistory history = bases.get(base);
+        if (history != null) {
+            return history;
+        }
+        if (!CURRENCY_CODE.matcher(base).matches()) {
+            if (create) {
+                throw new IllegalArgumentException("Invalid currency code: " + baseCurrency);
+            }
+            return null;
+        }
+        if (!create && !Files.isDirectory(directory.resolve(base))) {
+            return null;
+        }
+        return bases.computeIfAbsent(base, code -> new BaseHistory(code, directory.resolve(code)));
+    }
+
+    /**
+     * Segments of one base, opened when the base is first used. Appends to the base are serialized.
+     */
+    private static final class BaseHistory {
+
+        private final String base;
+        private final Path directory;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+
+        BaseHistory(String base, Path directory) {
+            this.base = base;
+            this.directory = directory;
+            if (!Files.isDirectory(directory)) {
+                return;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    int year = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(year, Segment.open(file, base, year));
+                }
+            } catch (IOException | NumberFormatException e) {
+                throw new IllegalStateException("Unreadable history directory " + directory, e);
+            }
+        }
+
+        Segment segment(int year, boolean create) {
+            Segment segment = segments.get(year);
+            if (segment != null || !create) {
+                return segment;
+            }
+            try {
+                Files.createDirectories(directory);
+                segment = Segment.open(directory.resolve(year + SEGMENT_SUFFIX), base, year);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            segments.put(year, segment);
+            return segment;
+        }
+    }
+
+    /**
+     * One year of records for one base. Readers use the published mapping and index without locking;
+     * a record becomes visible once publish() has remapped the file and set its index slot.
+     */
+    private static final class Segment {
+
+        private final String base;
+        private final int year;
+        private final FileChannel channel;
+        // Offset + 1 of the latest record of each day of the year, 0 when the day has none
+        private final AtomicIntegerArray offsets = new AtomicIntegerArray(366);
+        private final List<int[]> pending = new ArrayList<>();
+        private volatile MappedByteBuffer mapping;
+        private long size;
+
+        private Segment(String base, int year, FileChannel channel) {
+            this.base = base;
+            this.year = year;
+            this.channel = channel;
+        }
+
+        static Segment open(Path file, String base, int year) throws IOException {
+            FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(base, year, channel);
+            segment.index();
+            return segment;
+        }
+
+        // Rebuilds the index from the file, dropping a record left incomplete by a crash mid-append
+        private void index() throws IOException {
+            long fileSize = channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            int position = 0;
+            while (position + RECORD_HEADER <= fileSize) {
+                int epochDay = buffer.getInt(position);
+                long end = RateTableCodec.skip(buffer, position + RECORD_HEADER, fileSize);
+                if (end < 0) {
+                    break;
+                }
+                offsets.set(dayIndex(LocalDate.ofEpochDay(epochDay)), position + 1);
+                position = (int) end;
+            }
+            if (position < fileSize) {
+                logger.warn("Truncating incomplete history record at {} of {} {}", position, base, year);
+                channel.truncate(position);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, position);
+            }
+            size = position;
+            mapping = buffer;
+        }
+
+        void append(LocalDate date, RateTable table) throws IOException {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + RateTableCodec.encodedSize(table));
+            record.putInt((int) date.toEpochDay());
+            RateTableCodec.encode(table, record);
+            record.flip();
+            int offset = (int) size;
+            while (record.hasRemaining()) {
+                size += channel.write(record, size);
+            }
+            pending.add(new int[] {dayIndex(date), offset + 1});
+        }
+
+        // Makes appended records visible to readers
+        void publish() throws IOException {
+            if (pending.isEmpty()) {
+                return;
+            }
+            channel.force(false);
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for (int[] slot : pending) {
+                offsets.set(slot[0], slot[1]);
+            }
+            pending.clear();
+        }
+
+        RateTable read(LocalDate date) {
+            int offset = offsets.get(dayIndex(date)) - 1;
+            if (offset < 0) {
+                return null;
+            }
+            return RateTableCodec.decode(mapping, offset + RECORD_HEADER, base, date.atStartOfDay().toInstant(ZoneOffset.UTC));
+        }
+
+        LocalDate lastDate() {
+            for (int day = offsets.length() - 1; day >= 0; day--) {
+                if (offsets.get(day) != 0) {
+                    return LocalDate.ofYearDay(year, day + 1);
+                }
+            }
+            return null;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close history segment {} {}: {}", base, year, e.getMessage());
+            }
+        }
+
+        private static int dayIndex(LocalDate date) {
+            return date.getDayOfYear() - 1;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Extracts the rates of a provider response while its body is still arriving.
+ *
+ * The body is fed buffer by buffer into Jackson's non-blocking parser, so the payload is never
+ * copied into a String nor turned into a JsonNode tree. Only the object under the given top-level
+ * field is read, and only its entries for the requested symbols are converted to BigDecimal.
+ * Time series responses, with one object of rates per period, are read the same way.
+ */
+@Component
+public class JsonRateParser {
+
+    private final JsonFactory jsonFactory;
+
+    public JsonRateParser(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Rates found in the object under ratesField of the response, keyed by upper case symbol.
+     * An empty symbol set keeps every rate. Each buffer is released as soon as it has been parsed.
+     */
+    public Mono<Map<String, BigDecimal>> parseRates(Flux<DataBuffer> body, String ratesField, Set<String> symbols) {
+        return parse(body, () -> new RateTokenizer(jsonFactory.createNonBlockingByteBufferParser(), ratesField, symbols, false))
+            .map(tokenizer -> tokenizer.rates);
+    }
+
+    /**
+     * Rates of a time series response, where the object under ratesField maps each period
+     * (e.g. "2024-01-02") to its own object of rates. Periods keep the order of the response.
+     */
+    public Mono<Map<String, Map<String, BigDecimal>>> parseRateSeries(Flux<DataBuffer> body, String ratesField) {
+        return parse(body, () -> new RateTokenizer(jsonFactory.createNonBlockingByteBufferParser(), ratesField, Set.of(), true))
+            .map(tokenizer -> tokenizer.series);
+    }
+
+    private Mono<RateTokenizer> parse(Flux<DataBuffer> body, TokenizerFactory factory) {
+        return Mono.defer(() -> {
+            RateTokenizer tokenizer;
+            try {
+                tokenizer = factory.create();
+            } catch (IOException e) {
+                return Mono.error(e);
+            }
+            return body
+                .<Void>handle((buffer, sink) -> {
+                    try (DataBuffer.ByteBufferIterator chunks = buffer.readableByteBuffers()) {
+                        while (chunks.hasNext()) {
+                            tokenizer.feed(chunks.next());
+                        }
+                    } catch (IOException e) {
+                        sink.error(e);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .then(Mono.fromCallable(tokenizer::finish))
+                .doFinally(signal -> tokenizer.close());
+        });
+    }
+
+    private interface TokenizerFactory {
+        RateTokenizer create() throws IOException;
+    }
+
+    // Token state of one response; tracks nesting by hand since skipChildren() can't wait for more input
+    private static final class RateTokenizer {
+
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+        private final String ratesField;
+        private final Set<String> symbols;
+        // Rates are one level deeper in a series, under their period
+        private final int ratesDepth;
+        private final Map<String, BigDecimal> rates = new HashMap<>();
+        private final Map<String, Map<String, BigDecimal>> series = new LinkedHashMap<>();
+
+        private int depth;
+        private boolean ratesFieldNext;
+        private boolean inRates;
+        private String period;
+        private Map<String, BigDecimal> periodRates;
+        private String symbol;
+
+        RateTokenizer(JsonParser parser, String ratesField, Set<String> symbols, boolean series) {
+            this.parser = parser;
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            this.ratesField = ratesField;
+            this.symbols = symbols;
+            this.ratesDepth = series ? 3 : 2;
+            this.periodRates = rates;
+        }
+
+        void feed(ByteBuffer chunk) throws IOException {
+            feeder.feedInput(chunk);
+            drain();
+        }
+
+        RateTokenizer finish() throws IOException {
+            feeder.endOfInput();
+            drain();
+            return this;
+        }
+
+        void close() {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // Nothing left to read from it
+            }
+        }
+
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> {
+                        depth++;
+                        if (ratesFieldNext && token == JsonToken.START_OBJECT && depth == 2) {
+                            inRates = true;
+                        } else if (inRates && ratesDepth == 3 && depth == 3 && period != null) {
+                            periodRates = series.computeIfAbsent(period, key -> new HashMap<>());
+                        }
+                        ratesFieldNext = false;
+                    }
+                    case END_OBJECT, END_ARRAY -> {
+                        if (inRates && depth == 2) {
+                            inRates = false;
+                        }
+                        depth--;
+                    }
+                    case FIELD_NAME -> {
+                        if (depth == 1) {
+                            ratesFieldNext = ratesField.equals(parser.currentName());
+                        } else if (inRates && depth == 2 && ratesDepth == 3) {
+                            period = parser.currentName();
+                        } else if (inRates && depth == ratesDepth) {
+                            String name = parser.currentName().toUpperCase(Locale.ROOT);
+                            symbol = symbols.isEmpty() || symbols.contains(name) ? name : null;
+                        }
+                    }
+                    case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> {
+                        if (inRates && depth == ratesDepth && symbol != null) {
+                            periodRates.put(symbol, parser.getDecimalValue());
+                        }
+                        ratesFieldNext = false;
+                    }
+                    default -> ratesFieldNext = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads lines like BufferedReader.readLine (ended by \n, \r or \r\n), but keeps at most maxLength
+ * characters of a line. The rest of a longer line is read and thrown away, so a body without line
+ * breaks never ends up in memory as a whole; isTooLong() tells the caller the last line was cut.
+ */
+final class LineReader {
+
+    private final Reader reader;
+    private final int maxLength;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    // The last line ended with \r, a \n right after it belongs to the same line break
+    private boolean skipLf;
+    private boolean tooLong;
+
+    LineReader(Reader reader, int maxLength) {
+        this.reader = reader;
+        this.maxLength = maxLength;
+    }
+
+    // Next line without its line break, null at the end of the input
+    String readLine() throws IOException {
+        StringBuilder line = null;
+        boolean read = false;
+        tooLong = false;
+        while (true) {
+            if (position == limit) {
+                int count = reader.read(buffer, 0, buffer.length);
+                if (count < 0) {
+                    return read ? text(line) : null;
+                }
+                position = 0;
+                limit = count;
+                continue;
+            }
+            if (skipLf) {
+                skipLf = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+
+            int start = position;
+            while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') {
+                position++;
+            }
+            read = true;
+            boolean ended = position < limit;
+            if (ended) {
+                skipLf = buffer[position++] == '\r';
+                // Common case: the whole line is in the buffer and fits, no copy through a builder
+                if (line == null && !tooLong && position - 1 - start <= maxLength) {
+                    return new String(buffer, start, position - 1 - start);
+                }
+            }
+            line = append(line, start, (ended ? position - 1 : position) - start);
+            if (ended) {
+                return text(line);
+            }
+        }
+    }
+
+    // Whether the line last returned was longer than maxLength and has been cut to it
+    boolean isTooLong() {
+        return tooLong;
+    }
+
+    private StringBuilder append(StringBuilder line, int start, int count) {
+        if (line == null) {
+            line = new StringBuilder();
+        }
+        int room = maxLength - line.length();
+        if (count > room) {
+            tooLong = true;
+            count = room;
+        }
+        return line.append(buffer, start, count);
+    }
+
+    private static String text(StringBuilder line) {
+        return line == null ? "" : line.toString();
+    }
+}
@@ -1,47 +1,352 @@
 package com.lili.springboot.webapp.exchange_app.service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
 import com.lili.springboot.webapp.exchange_app.model.ApiMetrics;
+import com.lili.springboot.webapp.exchange_app.model.CacheStatistics;
+import com.lili.springboot.webapp.exchange_app.model.LatencySummary;
 import com.lili.springboot.webapp.exchange_app.model.MetricsResponse;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Counters and latency histograms of the application.
+ *
+ * Counters are LongAdders: every request thread adds to its own cell instead of contending on one
+ * shared value, and cells are only summed when the counters are read. Each counter is also bound to
+ * a Micrometer meter (exchange.queries, exchange.provider.requests with a provider tag, ...), so the
+ * actuator's metrics endpoint reads the same values as /metrics without a second increment.
+ *
+ * Latencies are recorded into Micrometer timers registered with the actuator's MeterRegistry
+ * (exchange.provider.latency, exchange.cache.latency, exchange.endpoint.latency), so they are
+ * available under /actuator/metrics as well as summarized in /metrics. Recording into a timer
+ * doesn't lock: each one keeps latency-window-buffers HdrHistograms rotated over latency-window,
+ * at latency-precision significant digits, and percentiles are computed from them when read.
+ */
 @Service
 public class MetricsService {
-     private final AtomicLong totalQueries = new AtomicLong(0);
-    private final ConcurrentHashMap<String, ApiMetrics> apiMetrics = new ConcurrentHashMap<>();
+    
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+    
+    private final LongAdder totalQueries = new LongAdder();
+    private final LongAdder coalescedQueries = new LongAdder();
+    private final LongAdder staleResponses = new LongAdder();
+    private final LongAdder backgroundRefreshes = new LongAdder();
+    private final LongAdder failedRefreshes = new LongAdder();
+    private final LongAdder activeStreams = new LongAdder();
+    private final LongAdder convertedRows = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder rateLimitedRequests = new LongAdder();
+    private final LongAdder shedMisses = new LongAdder();
+    private final LongAdder deferredRefreshes = new LongAdder();
+    private final ConcurrentHashMap<String, ProviderCounters> providers = new ConcurrentHashMap<>();
+    
+    private final MeterRegistry registry;
+    private final ExchangeRateProperties properties;
+    // Timers by provider and by endpoint, looked up once per name instead of through the registry on every call
+    private final ConcurrentHashMap<String, Timer> apiLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Timer> endpointLatencies = new ConcurrentHashMap<>();
+    private final Timer cacheHitLatency;
+    private final Timer cacheMissLatency;
+    
+    // Registered by ExchangeRateService, which owns the cache and the provider circuit breakers
+    private volatile Supplier<CacheStatistics> cacheStatistics;
+    private final AtomicReference<LongSupplier> cacheSize = new AtomicReference<>(() -> 0);
+    private final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    
+    /**
+     * Counts of one provider, each bound to a meter tagged with the provider name.
+     */
+    private static final class ProviderCounters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder responses = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder rejections = new LongAdder();
+        // Listed in /metrics; cleared by a reset until the provider is used again
+        volatile boolean reported = true;
+    
+        ProviderCounters(String apiName, MeterRegistry registry) {
+            counter(registry, "exchange.provider.requests", "Calls made to the provider", requests, "provider", apiName);
+            counter(registry, "exchange.provider.responses", "Calls that returned rates", responses, "provider", apiName);
+            counter(registry, "exchange.provider.errors", "Calls that failed", errors, "provider", apiName);
+            counter(registry, "exchange.provider.timeouts", "Calls that missed their deadline", timeouts, "provider", apiName);
+            counter(registry, "exchange.provider.rejections", "Calls skipped by the circuit breaker or bulkhead", rejections, "provider", apiName);
+        }
+    
+        void reset() {
+            requests.reset();
+            responses.reset();
+            errors.reset();
+            timeouts.reset();
+            rejections.reset();
+            reported = false;
+        }
+    }
+    
+    public MetricsService() {
+        this(new SimpleMeterRegistry(), new ExchangeRateProperties());
+    }
+    
+    @Autowired
+    public MetricsService(MeterRegistry registry, ExchangeRateProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+        this.cacheHitLatency = timer("exchange.cache.latency", "result", "hit");
+        this.cacheMissLatency = timer("exchange.cache.latency", "result", "miss");
+    
+        counter(registry, "exchange.queries", "Queries answered", totalQueries);
+        counter(registry, "exchange.queries.coalesced", "Cache misses that joined a fetch in flight", coalescedQueries);
+        counter(registry, "exchange.responses.stale", "Queries answered from a table past its TTL", staleResponses);
+        counter(registry, "exchange.refreshes", "Background refreshes", backgroundRefreshes, "result", "success");
+        counter(registry, "exchange.refreshes", "Background refreshes", failedRefreshes, "result", "failure");
+        counter(registry, "exchange.refreshes", "Background refreshes", deferredRefreshes, "result", "deferred");
+        counter(registry, "exchange.admission.rejections", "Requests turned away by admission control", rateLimitedRequests, "reason", "rate_limit");
+        counter(registry, "exchange.admission.rejections", "Requests turned away by admission control", shedMisses, "reason", "miss_limit");
+        counter(registry, "exchange.conversion.rows", "Rows processed by bulk conversions", convertedRows);
+        counter(registry, "exchange.cache.requests", "Base table requests by cache result", cacheHits, "result", "hit");
+        counter(registry, "exchange.cache.requests", "Base table requests by cache result", cacheMisses, "result", "miss");
+        Gauge.builder("exchange.streams.active", activeStreams, LongAdder::sum)
+            .description("Open rate streams")
+            .register(registry);
+        Gauge.builder("exchange.cache.size", cacheSize, size -> size.get().getAsLong())
+            .description("Base tables in the rate cache")
+            .register(registry);
+    }
+    
+    public void registerCacheStatistics(Supplier<CacheStatistics> cacheStatistics) {
+        this.cacheStatistics = cacheStatistics;
+    }
+    
+    public void registerCacheSize(LongSupplier cacheSize) {
+        this.cacheSize.set(cacheSize);
+    }
+    
+    public void registerCircuitBreaker(CircuitBreaker breaker) {
+        circuitBreakers.put(breaker.getName(), breaker);
+        provider(breaker.getName());
+    }
     
     public void incrementTotalQueries() {
-        totalQueries.incrementAndGet();
+        totalQueries.increment();
+    }
+    
+    // Cache miss that joined an upstream fetch already in flight instead of starting its own
+    public void incrementCoalescedQueries() {
+        coalescedQueries.increment();
+    }
+    
+    // Query answered from a table past its TTL while it is refreshed in the background
+    public void incrementStaleResponses() {
+        staleResponses.increment();
+    }
+    
+    public void incrementBackgroundRefreshes() {
+        backgroundRefreshes.increment();
+    }
+    
+    // Background refresh that got no rates, the previous table is kept
+    public void incrementFailedRefreshes() {
+        failedRefreshes.increment();
+    }
+    
+    // Background refresh postponed because max-concurrent-misses fetches were already running
+    public void incrementDeferredRefreshes() {
+        deferredRefreshes.increment();
+    }
+    
+    // Request answered with a 429 because its client ran out of tokens
+    public void incrementRateLimitedRequests() {
+        rateLimitedRequests.increment();
+    }
+    
+    // Cache miss answered with a 429 because max-concurrent-misses fetches were already running
+    public void incrementShedMisses() {
+        shedMisses.increment();
+    }
+    
+    // Open rate streams (Server-Sent Events subscribers)
+    public void incrementActiveStreams() {
+        activeStreams.increment();
+    }
+    
+    public void decrementActiveStreams() {
+        activeStreams.decrement();
+    }
+    
+    // Rows processed by bulk conversions, failed rows included
+    public void incrementConvertedRows(long rows) {
+        convertedRows.add(rows);
     }
     
     public void incrementApiRequests(String apiName) {
-        apiMetrics.computeIfAbsent(apiName, ApiMetrics::new).incrementRequests();
+        provider(apiName).requests.increment();
     }
     
     public void incrementApiResponses(String apiName) {
-        apiMetrics.computeIfAbsent(apiName, ApiMetrics::new).incrementResponses();
+        provider(apiName).responses.increment();
     }
     
     public void incrementApiErrors(String apiName) {
-        apiMetrics.computeIfAbsent(apiName, ApiMetrics::new).incrementErrors();
+        provider(apiName).errors.increment();
+    }
+    
+    // Provider did not answer within its deadline during a parallel fetch
+    public void incrementApiTimeouts(String apiName) {
+        provider(apiName).timeouts.increment();
+    }
+    
+    // Provider call skipped because its circuit breaker is open or its bulkhead is full
+    public void incrementApiRejections(String apiName) {
+        provider(apiName).rejections.increment();
+    }
+    
+    // Duration of one provider call that returned rates
+    public void recordApiLatency(String apiName, long nanos) {
+        apiLatencies.computeIfAbsent(apiName, name -> timer("exchange.provider.latency", "provider", name))
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    // Time to get a base table: a lookup on a hit, the whole upstream fetch (or the wait for it) on a miss
+    public void recordCacheLatency(boolean hit, long nanos) {
+        (hit ? cacheHits : cacheMisses).increment();
+        (hit ? cacheHitLatency : cacheMissLatency).record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    // Handling time of a request, keyed by method and mapping pattern ("GET /exchangeRates/{baseCurrency}")
+    public void recordEndpointLatency(String endpoint, long nanos) {
+        endpointLatencies.computeIfAbsent(endpoint, name -> timer("exchange.endpoint.latency", "endpoint", name))
+            .record(nanos, TimeUnit.NANOSECONDS);
     }
     
     public MetricsResponse getMetrics() {
-        List<ApiMetrics> apis = apiMetrics.values().stream()
-            .collect(Collectors.toList());
-        
-        return new MetricsResponse(totalQueries.get(), apis);
+        List<ApiMetrics> apis = new ArrayList<>(providers.size());
+        providers.forEach((apiName, counters) -> {
+            if (!counters.reported) {
+                return;
+            }
+            ApiMetrics api = new ApiMetrics(apiName);
+            api.setTotalRequests(counters.requests.sum());
+            api.setTotalResponses(counters.responses.sum());
+            api.setTotalErrors(counters.errors.sum());
+            api.setTotalTimeouts(counters.timeouts.sum());
+            api.setTotalRejections(counters.rejections.sum());
+            CircuitBreaker breaker = circuitBreakers.get(apiName);
+            if (breaker != null) {
+                api.setCircuitState(breaker.getState().name());
+                api.setFailureRate(breaker.getFailureRate());
+                api.setSlowCallRate(breaker.getSlowCallRate());
+            }
+            Timer latency = apiLatencies.get(apiName);
+            if (latency != null) {
+                api.setLatency(summarize(latency));
+            }
+            apis.add(api);
+        });
+    
+        MetricsResponse response = new MetricsResponse(totalQueries.sum(), apis);
+        response.setCoalescedQueries(coalescedQueries.sum());
+        response.setStaleResponses(staleResponses.sum());
+        response.setBackgroundRefreshes(backgroundRefreshes.sum());
+        response.setFailedRefreshes(failedRefreshes.sum());
+        response.setActiveStreams(activeStreams.sum());
+        response.setConvertedRows(convertedRows.sum());
+        response.setCacheHits(cacheHits.sum());
+        response.setCacheMisses(cacheMisses.sum());
+        response.setRateLimitedRequests(rateLimitedRequests.sum());
+        response.setShedMisses(shedMisses.sum());
+        response.setDeferredRefreshes(deferredRefreshes.sum());
+        if (cacheStatistics != null) {
+            response.setCache(cacheStatistics.get());
+        }
+        response.setCacheHitLatency(summarize(cacheHitLatency));
+        response.setCacheMissLatency(summarize(cacheMissLatency));
+        Map<String, LatencySummary> endpoints = new TreeMap<>();
+        endpointLatencies.forEach((endpoint, latency) -> endpoints.put(endpoint, summarize(latency)));
+        response.setEndpoints(endpoints);
+        return response;
     }
     
     // Reset all metrics (useful for testing)
     public void resetMetrics() {
-        totalQueries.set(0);
-        apiMetrics.clear();
+        totalQueries.reset();
+        coalescedQueries.reset();
+        staleResponses.reset();
+        backgroundRefreshes.reset();
+        failedRefreshes.reset();
+        convertedRows.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        rateLimitedRequests.reset();
+        shedMisses.reset();
+        deferredRefreshes.reset();
+        // Provider meters stay registered, bound to the same counters
+        providers.values().forEach(ProviderCounters::reset);
+    }
+    
+    private ProviderCounters provider(String apiName) {
+        ProviderCounters counters = providers.get(apiName);
+        if (counters == null) {
+            return providers.computeIfAbsent(apiName, name -> new ProviderCounters(name, registry));
+        }
+        if (!counters.reported) {
+            counters.reported = true;
+        }
+        return counters;
     }
- 
+    
+    private static void counter(MeterRegistry registry, String name, String description, LongAdder count, String... tags) {
+        FunctionCounter.builder(name, count, LongAdder::sum)
+            .description(description)
+            .tags(tags)
+            .register(registry);
+    }
+    
+    private Timer timer(String name, String tagKey, String tagValue) {
+        return Timer.builder(name)
+            .tag(tagKey, tagValue)
+            .publishPercentiles(PERCENTILES)
+            .percentilePrecision(properties.getLatencyPrecision())
+            .distributionStatisticExpiry(properties.getLatencyWindow())
+            .distributionStatisticBufferLength(properties.getLatencyWindowBuffers())
+            .register(registry);
+    }
+    
+    private static LatencySummary summarize(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        LatencySummary summary = new LatencySummary(snapshot.count(),
+            snapshot.mean(TimeUnit.MILLISECONDS), snapshot.max(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            double millis = value.value(TimeUnit.MILLISECONDS);
+            if (value.percentile() == 0.5) {
+                summary.setP50(millis);
+            } else if (value.percentile() == 0.99) {
+                summary.setP99(millis);
+            } else if (value.percentile() == 0.999) {
+                summary.setP999(millis);
+            }
+        }
+        return summary;
+    }
+    
 }
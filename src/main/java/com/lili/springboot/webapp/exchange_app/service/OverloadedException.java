@@ -0,0 +1,23 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.time.Duration;
+
+/**
+ * A cache miss turned away because max-concurrent-misses upstream fetches were already running.
+ * Controllers answer it with a 429 and a Retry-After of getRetryAfter().
+ */
+public class OverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration retryAfter;
+
+    public OverloadedException(String baseCurrency, Duration retryAfter) {
+        super("Too many upstream fetches in progress, not fetching " + baseCurrency);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
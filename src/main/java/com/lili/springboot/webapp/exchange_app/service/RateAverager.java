@@ -0,0 +1,134 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+import com.lili.springboot.webapp.exchange_app.model.CurrencyRegistry;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+
+/**
+ * Averages the rates returned by several providers into one RateTable.
+ *
+ * Sums are kept per currency ordinal as unscaled longs at a common decimal scale instead of
+ * BigDecimal partial sums, and an exact average is stored without any division. A sum that would
+ * overflow (or needs more than 18 digits of rescaling) falls back to BigDecimal for that currency only.
+ */
+final class RateAverager {
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private long[] sums;
+    private int[] scales;
+    private int[] counts;
+    private BigDecimal[] overflow;
+
+    RateAverager() {
+        int capacity = CurrencyRegistry.size();
+        sums = new long[capacity];
+        scales = new int[capacity];
+        counts = new int[capacity];
+    }
+
+    void addAll(Map<String, BigDecimal> rates) {
+        for (Map.Entry<String, BigDecimal> entry : rates.entrySet()) {
+            add(entry.getKey().toUpperCase(Locale.ROOT), entry.getValue());
+        }
+    }
+
+    void add(String symbol, BigDecimal rate) {
+        int ordinal = CurrencyRegistry.register(symbol);
+        if (ordinal < 0) {
+            return;
+        }
+        ensureCapacity(ordinal);
+
+        BigDecimal rounded = rate.round(MathContext.DECIMAL64);
+        counts[ordinal]++;
+        if (overflow != null && overflow[ordinal] != null) {
+            overflow[ordinal] = overflow[ordinal].add(rounded);
+            return;
+        }
+        long value = rounded.unscaledValue().longValue();
+        int scale = rounded.scale();
+        if (counts[ordinal] == 1) {
+            sums[ordinal] = value;
+            scales[ordinal] = scale;
+            return;
+        }
+
+        try {
+            long sum = sums[ordinal];
+            int sumScale = scales[ordinal];
+            if (scale > sumScale) {
+                sum = Math.multiplyExact(sum, powerOfTen(scale - sumScale));
+                sumScale = scale;
+            } else if (scale < sumScale) {
+                value = Math.multiplyExact(value, powerOfTen(sumScale - scale));
+            }
+            sums[ordinal] = Math.addExact(sum, value);
+            scales[ordinal] = sumScale;
+        } catch (ArithmeticException e) {
+            if (overflow == null) {
+                overflow = new BigDecimal[sums.length];
+            }
+            overflow[ordinal] = BigDecimal.valueOf(sums[ordinal], scales[ordinal]).add(rounded);
+        }
+    }
+
+    // Average of every currency at DECIMAL64 precision, at the time the providers answered
+    RateTable average(String baseCurrency, Instant fetchedAt) {
+        RateTable.Builder builder = new RateTable.Builder();
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            int count = counts[ordinal];
+            if (count == 0) {
+                continue;
+            }
+            if (overflow != null && overflow[ordinal] != null) {
+                builder.put(ordinal, overflow[ordinal].divide(BigDecimal.valueOf(count), MathContext.DECIMAL64));
+                continue;
+            }
+            long sum = sums[ordinal];
+            int scale = scales[ordinal];
+            long quotient = sum / count;
+            if (sum % count == 0 && Math.abs(quotient) < POWERS_OF_TEN[16]
+                    && scale >= Byte.MIN_VALUE && scale <= Byte.MAX_VALUE) {
+                // Exact average that fits the table's 16 digits, no BigDecimal needed
+                builder.putUnscaled(ordinal, quotient, scale);
+            } else {
+                builder.put(ordinal, BigDecimal.valueOf(sum, scale)
+                    .divide(BigDecimal.valueOf(count), MathContext.DECIMAL64));
+            }
+        }
+        return builder.build(baseCurrency, fetchedAt);
+    }
+
+    private void ensureCapacity(int ordinal) {
+        if (ordinal < sums.length) {
+            return;
+        }
+        int capacity = Math.max(ordinal + 1, CurrencyRegistry.size());
+        sums = Arrays.copyOf(sums, capacity);
+        scales = Arrays.copyOf(scales, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        if (overflow != null) {
+            overflow = Arrays.copyOf(overflow, capacity);
+        }
+    }
+
+    private static long powerOfTen(int exponent) {
+        if (exponent >= POWERS_OF_TEN.length) {
+            throw new ArithmeticException("Scale difference too large");
+        }
+        return POWERS_OF_TEN[exponent];
+    }
+}
@@ -0,0 +1,89 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import com.lili.springboot.webapp.exchange_app.model.CurrencyRegistry;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+
+/**
+ * Binary form of the rates of a RateTable, shared by the on-disk history and cache snapshot.
+ *
+ * [short count] followed by count entries of [byte length][ASCII code][byte scale][long unscaled].
+ * Codes are written out rather than ordinals, since ordinals are only stable within one process.
+ * Decoding copies the fixed-point values straight into a RateTable.Builder, without BigDecimal.
+ */
+final class RateTableCodec {
+
+    private RateTableCodec() {}
+
+    // Bytes needed to encode the rates of the table
+    static int encodedSize(RateTable table) {
+        int size = Short.BYTES;
+        for (int ordinal = 0; ordinal < table.capacity(); ordinal++) {
+            if (table.hasRate(ordinal)) {
+                size += 1 + CurrencyRegistry.code(ordinal).length() + 1 + Long.BYTES;
+            }
+        }
+        return size;
+    }
+
+    static void encode(RateTable table, ByteBuffer out) {
+        out.putShort((short) table.size());
+        for (int ordinal = 0; ordinal < table.capacity(); ordinal++) {
+            if (table.hasRate(ordinal)) {
+                byte[] code = CurrencyRegistry.code(ordinal).getBytes(StandardCharsets.US_ASCII);
+                out.put((byte) code.length);
+                out.put(code);
+                out.put((byte) table.getScale(ordinal));
+                out.putLong(table.getUnscaled(ordinal));
+            }
+        }
+    }
+
+    /**
+     * Position right after the rates encoded at position, or -1 if they don't fit before limit
+     * (a record cut short by a crash).
+     */
+    static long skip(ByteBuffer in, int position, long limit) {
+        if (position + Short.BYTES > limit) {
+            return -1;
+        }
+        int count = in.getShort(position);
+        long end = position + Short.BYTES;
+        for (int i = 0; i < count; i++) {
+            if (end >= limit) {
+                return -1;
+            }
+            end += 1 + in.get((int) end) + 1 + Long.BYTES;
+        }
+        return count < 0 || end > limit ? -1 : end;
+    }
+
+    // Rates encoded at position, read with absolute gets so concurrent readers can share the buffer
+    static RateTable decode(ByteBuffer in, int position, String base, Instant fetchedAt) {
+        int count = in.getShort(position);
+        position += Short.BYTES;
+        RateTable.Builder rates = new RateTable.Builder();
+        for (int i = 0; i < count; i++) {
+            int length = in.get(position);
+            int ordinal = length == 3
+                ? CurrencyRegistry.find((char) in.get(position + 1), (char) in.get(position + 2), (char) in.get(position + 3))
+                : -1;
+            if (ordinal < 0) {
+                byte[] code = new byte[length];
+                in.get(position + 1, code);
+                ordinal = CurrencyRegistry.register(new String(code, StandardCharsets.US_ASCII));
+            }
+            position += 1 + length;
+            byte scale = in.get(position);
+            long unscaled = in.getLong(position + 1);
+            position += 1 + Long.BYTES;
+            if (ordinal >= 0) {
+                rates.putUnscaled(ordinal, unscaled, scale);
+            }
+        }
+        return rates.build(base, fetchedAt);
+    }
+}
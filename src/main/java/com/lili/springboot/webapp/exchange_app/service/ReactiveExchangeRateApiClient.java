@@ -0,0 +1,17 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variant of ExchangeRateApiClient.
+ * The returned Mono does not hold a thread while the provider answers, and reports
+ * failures as error signals instead of an empty map.
+ */
+public interface ReactiveExchangeRateApiClient extends ExchangeRateApiClient {
+    Mono<Map<String, BigDecimal>> fetchExchangeRates(String baseCurrency, Set<String> symbols);
+
+}
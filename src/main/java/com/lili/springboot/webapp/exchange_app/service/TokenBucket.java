@@ -0,0 +1,59 @@
+package com.lili.springboot.webapp.exchange_app.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket of one client: refills at a fixed rate and holds at most burst tokens.
+ *
+ * Implemented as the generic cell rate algorithm: instead of a token count and a refill timestamp,
+ * the bucket keeps one value, the time at which it would be full again (the theoretical arrival time).
+ * Taking a token moves it forward by one refill interval; a request is refused if that would put it more
+ * than burst intervals ahead of now. The whole state is one AtomicLong updated by compare-and-set,
+ * so concurrent requests of the same client never lock and an idle bucket needs no refill work.
+ */
+public final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double tokensPerSecond, int burst, long nowNanos) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / tokensPerSecond));
+        this.capacityNanos = intervalNanos * Math.max(1, burst);
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes a token if one is available. Returns 0 if it was taken, otherwise the nanoseconds
+     * until the next token arrives (nothing is taken then).
+     */
+    public long tryAcquire(long nowNanos) {
+        return tryAcquire(nowNanos, 1);
+    }
+
+    /**
+     * Takes the given number of tokens at once, or none. A request never costs more than the whole
+     * burst, otherwise it could never be admitted.
+     */
+    public long tryAcquire(long nowNanos, int tokens) {
+        long costNanos = Math.min(Math.max(1, tokens) * intervalNanos, capacityNanos);
+        while (true) {
+            long current = fullAt.get();
+            // max(current, now) as a difference, since nanoTime may overflow; a bucket that was full
+            // for a while keeps no credit beyond its burst
+            long next = Math.max(current - nowNanos, 0) + nowNanos + costNanos;
+            long wait = next - nowNanos - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // Time an untouched bucket takes to fill up completely, after which it can be forgotten
+    public long refillNanos() {
+        return capacityNanos;
+    }
+}
@@ -2,17 +2,35 @@ package com.lili.springboot.webapp.exchange_app;
 
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.config.ProviderWebClientFactory;
 import com.lili.springboot.webapp.exchange_app.service.FrankfurterApiClient;
+import com.lili.springboot.webapp.exchange_app.service.JsonRateParser;
+
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -71,19 +89,30 @@ class ApiClientTest {
         System.out.println("✅ Frankfurter API client test exitoso");
     }
     
+    @Test
+    void testFrankfurterApiClient_FullTable() throws Exception {
+        // Sin symbols se pide la tabla completa de la base
+        mockWebServer.enqueue(new MockResponse()
+            .setBody("{\"base\":\"EUR\",\"rates\":{\"USD\":1.08,\"NZD\":1.60,\"GBP\":0.85}}")
+            .addHeader("Content-Type", "application/json"));
+        
+        Map<String, BigDecimal> rates = frankfurterClient.getExchangeRates("EUR", Set.of());
+        
+        assertEquals(3, rates.size());
+        assertEquals(new BigDecimal("0.85"), rates.get("GBP"));
+        assertEquals("/latest?base=EUR", mockWebServer.takeRequest().getPath());
+    }
+    
     @Test
     void testFrankfurterApiClient_HttpError() {
         // Mock error response (HTTP 500)
         mockWebServer.enqueue(new MockResponse().setResponseCode(500));
         
-        // NO esperamos excepción, solo verificamos que maneja el error correctamente
-        Map<String, BigDecimal> rates = frankfurterClient.getExchangeRates("EUR", Set.of("USD"));
-        
-        // Tu implementación probablemente retorna Map vacío en caso de error
-        assertNotNull(rates);
-        assertTrue(rates.isEmpty(), "Debería retornar Map vacío en caso de error");
+        // El error se propaga para que el servicio lo cuente y lo registre en el circuit breaker
+        assertThrows(WebClientResponseException.class,
+            () -> frankfurterClient.getExchangeRates("EUR", Set.of("USD")));
         
-        System.out.println("✅ Error HTTP manejado correctamente: Map vacío");
+        System.out.println("✅ Error HTTP propagado");
     }
     
     @Test
@@ -93,12 +122,11 @@ class ApiClientTest {
             .setBody("Invalid JSON {")
             .addHeader("Content-Type", "application/json"));
         
-        // Verificar que maneja JSON inválido
-        Map<String, BigDecimal> rates = frankfurterClient.getExchangeRates("EUR", Set.of("USD"));
+        // Un body que no es JSON también es un fallo del proveedor, no un Map vacío
+        assertThrows(RuntimeException.class,
+            () -> frankfurterClient.getExchangeRates("EUR", Set.of("USD")));
         
-        assertNotNull(rates);
-        // Puede ser vacío o tener datos de prueba, dependiendo de tu implementación
-        System.out.println("✅ JSON inválido manejado: " + rates);
+        System.out.println("✅ JSON inválido propagado como error");
     }
     
     @Test
@@ -114,6 +142,24 @@ class ApiClientTest {
         System.out.println("✅ Respuesta vacía manejada: " + rates);
     }
     
+    @Test
+    void testFrankfurterApiClient_ConditionalRequest() throws Exception {
+        // Primera respuesta con ETag, la segunda petición lo reenvía y recibe un 304
+        mockWebServer.enqueue(new MockResponse()
+            .setBody("{\"base\":\"EUR\",\"rates\":{\"USD\":1.08}}")
+            .addHeader("Content-Type", "application/json")
+            .addHeader("ETag", "\"v1\""));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(304).addHeader("ETag", "\"v1\""));
+        
+        Map<String, BigDecimal> first = frankfurterClient.getExchangeRates("EUR", Set.of());
+        Map<String, BigDecimal> second = frankfurterClient.getExchangeRates("EUR", Set.of());
+        
+        assertNull(mockWebServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals("\"v1\"", mockWebServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals(Map.of("USD", new BigDecimal("1.08")), second);
+        assertEquals(first, second);
+    }
+    
     @Test
     void testApiClientExists() {
         // Test básico para verificar que el client se crea correctamente
@@ -122,4 +168,56 @@ class ApiClientTest {
         
         System.out.println("✅ FrankfurterApiClient creado correctamente");
     }
-}
\ No newline at end of file
+    
+    @Test
+    void testJsonRateParser_BufferBoundariesAndRequestedSymbolsOnly() {
+        // Formato de FreeCurrency, cortado en buffers de 7 bytes para partir nombres y números
+        String body = "{\"date\":\"2024-01-01\",\"eur\":{\"usd\":1.0812,\"nzd\":1.6,"
+            + "\"gbp\":0.85,\"meta\":{\"usd\":9.99}},\"usd\":{\"eur\":0.92}}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += 7) {
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(
+                Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + 7))));
+        }
+        
+        JsonRateParser parser = new JsonRateParser(new ObjectMapper());
+        Map<String, BigDecimal> rates = parser.parseRates(Flux.fromIterable(buffers), "eur", Set.of("USD", "GBP")).block();
+        
+        assertEquals(Map.of("USD", new BigDecimal("1.0812"), "GBP", new BigDecimal("0.85")), rates);
+    }
+    
+    @Test
+    void testProviderTransport_GzipAndResponseTimeout() throws Exception {
+        // Cliente construido por la factory, con su propio pool y un response timeout corto
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.getProviderBaseUrls().put("frankfurter", mockWebServer.url("/").toString());
+        properties.getProviderTransport().setResponseTimeout(Duration.ofMillis(300));
+        ProviderWebClientFactory factory = new ProviderWebClientFactory(WebClient.builder(), properties);
+        FrankfurterApiClient client = new FrankfurterApiClient(factory, new JsonRateParser(new ObjectMapper()));
+        
+        try {
+            // Respuesta comprimida con gzip
+            Buffer gzipped = new Buffer();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped.outputStream())) {
+                gzip.write("{\"base\":\"EUR\",\"rates\":{\"USD\":1.08}}".getBytes(StandardCharsets.UTF_8));
+            }
+            mockWebServer.enqueue(new MockResponse()
+                .setBody(gzipped)
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Content-Encoding", "gzip"));
+            
+            assertEquals(Map.of("USD", new BigDecimal("1.08")), client.getExchangeRates("EUR", Set.of("USD")));
+            assertEquals("gzip", mockWebServer.takeRequest().getHeader("Accept-Encoding"));
+            
+            // Un proveedor que no responde a tiempo falla en el transporte, sin esperar al deadline del servicio
+            mockWebServer.enqueue(new MockResponse()
+                .setBody("{\"rates\":{}}")
+                .setHeadersDelay(2, TimeUnit.SECONDS));
+            
+            assertThrows(WebClientRequestException.class, () -> client.getExchangeRates("EUR", Set.of("USD")));
+        } finally {
+            factory.destroy();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import com.lili.springboot.webapp.exchange_app.config.ClientRateLimiter;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.controller.BatchExchangeRateController;
+import com.lili.springboot.webapp.exchange_app.model.BatchResult;
+import com.lili.springboot.webapp.exchange_app.model.CacheKey;
+import com.lili.springboot.webapp.exchange_app.model.ExchangeRateResponse;
+import com.lili.springboot.webapp.exchange_app.service.ExchangeRateService;
+import com.lili.springboot.webapp.exchange_app.service.MetricsService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import reactor.core.publisher.Mono;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchExchangeRateControllerTest {
+
+    @Mock
+    private ExchangeRateService exchangeRateService;
+    
+    private MockMvc mockMvc;
+    
+    @BeforeEach
+    void setUp() {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setBatchMaxQueries(3);
+        // Ráfaga de 5 consultas y casi sin recarga, para poder agotarla en un test
+        properties.setClientBurst(5);
+        properties.setClientRateLimit(0.01);
+        BatchExchangeRateController controller = new BatchExchangeRateController(exchangeRateService, properties,
+            new ClientRateLimiter(properties, new MetricsService()));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+    
+    @Test
+    void testBatch_ResultsInQueryOrderWithPerItemErrors() throws Exception {
+        // Solo las dos consultas válidas llegan al servicio, la inválida se responde con su error
+        when(exchangeRateService.getExchangeRatesBatch(argThat((List<CacheKey> keys) -> keys.size() == 2
+                && keys.get(0).getBaseCurrency().equals("EUR") && keys.get(1).getBaseCurrency().equals("USD"))))
+            .thenReturn(Mono.just(List.of(
+                BatchResult.success(new ExchangeRateResponse(
+                    "EUR", Map.of("USD", new BigDecimal("1.08")))),
+                BatchResult.failure("USD", "No exchange rates found"))));
+        
+        String body = """
+            {"queries": [
+                {"base": "EUR", "symbols": "USD"},
+                {"base": "GBP", "symbols": " , "},
+                {"base": "USD", "symbols": "XXX"}
+            ]}
+            """;
+        
+        mockMvc.perform(asyncDispatch(startAsync(body)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.results.length()").value(3))
+            .andExpect(jsonPath("$.results[0].base").value("EUR"))
+            .andExpect(jsonPath("$.results[0].rates.USD").value(1.08))
+            .andExpect(jsonPath("$.results[1].base").value("GBP"))
+            .andExpect(jsonPath("$.results[1].error").value("Invalid symbols parameter"))
+            .andExpect(jsonPath("$.results[2].error").value("No exchange rates found"));
+    }
+    
+    @Test
+    void testBatch_BadRequest_TooManyQueries() throws Exception {
+        String body = """
+            {"queries": [
+                {"base": "EUR", "symbols": "USD"}, {"base": "EUR", "symbols": "GBP"},
+                {"base": "EUR", "symbols": "JPY"}, {"base": "EUR", "symbols": "NZD"}
+            ]}
+            """;
+        
+        mockMvc.perform(asyncDispatch(startAsync(body)))
+            .andExpect(status().isBadRequest());
+        verifyNoInteractions(exchangeRateService);
+    }
+    
+    @Test
+    void testBatch_ChargesOneTokenPerQuery() throws Exception {
+        when(exchangeRateService.getExchangeRatesBatch(argThat((List<CacheKey> keys) -> keys.size() == 3)))
+            .thenReturn(Mono.just(List.of(
+                BatchResult.failure("EUR", "No exchange rates found"),
+                BatchResult.failure("EUR", "No exchange rates found"),
+                BatchResult.failure("EUR", "No exchange rates found"))));
+        String body = """
+            {"queries": [
+                {"base": "EUR", "symbols": "USD"}, {"base": "EUR", "symbols": "GBP"}, {"base": "EUR", "symbols": "JPY"}
+            ]}
+            """;
+        
+        // La primera gasta 3 de los 5 tokens, la segunda ya no cabe aunque sea una sola petición
+        mockMvc.perform(asyncDispatch(startAsync(body)))
+            .andExpect(status().isOk());
+        mockMvc.perform(asyncDispatch(startAsync(body)))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().exists("Retry-After"));
+        verify(exchangeRateService, times(1)).getExchangeRatesBatch(anyList());
+    }
+    
+    @Test
+    void testBatch_BadRequest_NoQueries() throws Exception {
+        mockMvc.perform(asyncDispatch(startAsync("{\"queries\": []}")))
+            .andExpect(status().isBadRequest());
+    }
+    
+    // The handler returns a Mono, so the response is only written on the async dispatch
+    private MvcResult startAsync(String body) throws Exception {
+        return mockMvc.perform(post("/exchangeRates/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    }
+}
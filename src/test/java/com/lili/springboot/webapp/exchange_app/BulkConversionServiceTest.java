@@ -0,0 +1,213 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.CurrencyRegistry;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+import com.lili.springboot.webapp.exchange_app.service.BulkConversionService;
+import com.lili.springboot.webapp.exchange_app.service.ExchangeRateService;
+import com.lili.springboot.webapp.exchange_app.service.MetricsService;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BulkConversionServiceTest {
+
+    @Mock
+    private ExchangeRateService exchangeRateService;
+    
+    private MetricsService metricsService;
+    private BulkConversionService bulkConversionService;
+    
+    @BeforeAll
+    static void registerCurrencies() {
+        // Los códigos se conocen cuando un proveedor los devuelve; aquí el servicio es un mock
+        for (String code : new String[] {"EUR", "USD", "GBP", "NZD", "IDR", "CHF"}) {
+            CurrencyRegistry.register(code);
+        }
+    }
+    
+    @BeforeEach
+    void setUp() {
+        metricsService = new MetricsService();
+        bulkConversionService = new BulkConversionService(exchangeRateService, metricsService, new ExchangeRateProperties(), new ObjectMapper());
+    }
+    
+    @Test
+    void testConvertCsv_ResolvesEachBaseOnceAndKeepsBadRows() throws Exception {
+        // NZD es una moneda conocida pero no está en la tabla de EUR
+        when(exchangeRateService.getRateTable("EUR")).thenReturn(RateTable.of("EUR",
+            Map.of("USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.85")), Instant.now()));
+        
+        String input = """
+            amount,from,to
+            100,EUR,USD
+            10.5,eur,gbp
+            abc,EUR,USD
+            5,EUR,QQQ
+            5,EUR,NZD
+            7,USD,USD
+            200,EUR,USD
+            """;
+        StringWriter output = new StringWriter();
+        
+        long rows = bulkConversionService.convertCsv(new BufferedReader(new StringReader(input)), output);
+        
+        assertEquals(7, rows);
+        assertEquals("""
+            amount,from,to,rate,converted,error
+            100,EUR,USD,1.080000,108.000000,
+            10.5,EUR,GBP,0.850000,8.925000,
+            abc,EUR,USD,,,Invalid amount
+            5,EUR,QQQ,,,Unknown currency QQQ
+            5,EUR,NZD,,,No rate for EUR/NZD
+            7,USD,USD,1.000000,7.000000,
+            200,EUR,USD,1.080000,216.000000,
+            """, output.toString());
+        // Una sola tabla para todas las filas con base EUR, y ninguna para USD/USD
+        verify(exchangeRateService, times(1)).getRateTable("EUR");
+        assertEquals(7, metricsService.getMetrics().getConvertedRows());
+    }
+    
+    @Test
+    void testConvertCsv_SmallRatesAreNotRoundedBeforeConverting() throws Exception {
+        // Una tasa derivada de una moneda débil: redondearla a 6 decimales la dejaría en 0.000061
+        when(exchangeRateService.getRateTable("IDR")).thenReturn(RateTable.of("IDR",
+            Map.of("USD", new BigDecimal("0.00006123"), "EUR", new BigDecimal("0.0000003")), Instant.now()));
+        
+        String input = """
+            1000000,IDR,USD
+            1000000,IDR,EUR
+            """;
+        StringWriter output = new StringWriter();
+        
+        bulkConversionService.convertCsv(new BufferedReader(new StringReader(input)), output);
+        
+        assertEquals("""
+            amount,from,to,rate,converted,error
+            1000000,IDR,USD,0.00006123,61.230000,
+            1000000,IDR,EUR,0.0000003,0.300000,
+            """, output.toString());
+    }
+    
+    @Test
+    void testConvertCsv_UnknownCodesAndFailedFetchesAreRowErrors() throws Exception {
+        when(exchangeRateService.getRateTable("CHF")).thenThrow(new RuntimeException("Provider down"));
+        
+        // Códigos inventados no llegan al servicio, y un fallo al cargar se informa en cada fila de esa base
+        String input = """
+            1,ABQ,USD
+            1,ZZQ,USD
+            1,CHF,USD
+            2,CHF,EUR
+            """;
+        StringWriter output = new StringWriter();
+        
+        bulkConversionService.convertCsv(new BufferedReader(new StringReader(input)), output);
+        
+        assertEquals("""
+            amount,from,to,rate,converted,error
+            1,ABQ,USD,,,Unknown currency ABQ
+            1,ZZQ,USD,,,Unknown currency ZZQ
+            1,CHF,USD,,,Rates for CHF unavailable: Provider down
+            2,CHF,EUR,,,Rates for CHF unavailable: Provider down
+            """, output.toString());
+        verify(exchangeRateService, times(1)).getRateTable("CHF");
+        verify(exchangeRateService, times(1)).getPivotTable();
+        verifyNoMoreInteractions(exchangeRateService);
+    }
+    
+    @Test
+    void testConvertCsv_AmountsOutOfRangeAreRowErrors() throws Exception {
+        when(exchangeRateService.getRateTable("EUR")).thenReturn(RateTable.of("EUR",
+            Map.of("USD", new BigDecimal("1.08")), Instant.now()));
+        
+        // Exponentes enormes se rechazan antes de multiplicar, en vez de construir números gigantes
+        String input = """
+            1e99999999,EUR,USD
+            1e-99999999,EUR,USD
+            1e5,EUR,USD
+            """;
+        StringWriter output = new StringWriter();
+        
+        bulkConversionService.convertCsv(new BufferedReader(new StringReader(input)), output);
+        
+        assertEquals("""
+            amount,from,to,rate,converted,error
+            1e99999999,EUR,USD,,,Amount out of range
+            1e-99999999,EUR,USD,,,Amount out of range
+            1e5,EUR,USD,1.080000,108000.000000,
+            """, output.toString());
+    }
+    
+    @Test
+    void testRowsLongerThanTheLimitAreSkippedWithAnError() throws Exception {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setConversionMaxLineLength(50);
+        BulkConversionService limited = new BulkConversionService(exchangeRateService, metricsService, properties, new ObjectMapper());
+        when(exchangeRateService.getRateTable("EUR")).thenReturn(RateTable.of("EUR",
+            Map.of("USD", new BigDecimal("1.08")), Instant.now()));
+        
+        // La fila larga no se guarda entera: se descarta hasta el salto de línea y la siguiente se convierte
+        String csv = "1,EUR,USD\r\n" + "9".repeat(100_000) + ",EUR,USD\r\n2,EUR,USD";
+        StringWriter csvOutput = new StringWriter();
+        long rows = limited.convertCsv(new StringReader(csv), csvOutput);
+        
+        assertEquals(3, rows);
+        assertEquals("""
+            amount,from,to,rate,converted,error
+            1,EUR,USD,1.080000,1.080000,
+            ,,,,,Row longer than 50 characters
+            2,EUR,USD,1.080000,2.160000,
+            """, csvOutput.toString());
+        
+        String ndjson = "{\"amount\": \"" + " ".repeat(100) + "\"}\n{\"amount\": 1, \"from\": \"EUR\", \"to\": \"USD\"}\n";
+        StringWriter ndjsonOutput = new StringWriter();
+        limited.convertNdjson(new StringReader(ndjson), ndjsonOutput);
+        
+        String[] lines = ndjsonOutput.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"amount\":null,\"from\":null,\"to\":null,\"error\":\"Row longer than 50 characters\"}", lines[0]);
+        assertEquals("{\"amount\":\"1\",\"from\":\"EUR\",\"to\":\"USD\",\"rate\":1.080000,\"converted\":1.080000}", lines[1]);
+    }
+    
+    @Test
+    void testConvertNdjson_OneObjectPerRow() throws Exception {
+        when(exchangeRateService.getRateTable("EUR")).thenReturn(RateTable.of("EUR",
+            Map.of("USD", new BigDecimal("1.08")), Instant.now()));
+        
+        String input = """
+            {"amount": 100, "from": "EUR", "to": "USD"}
+            {"amount": 1, "from": "EUR"}
+            not json
+            """;
+        StringWriter output = new StringWriter();
+        
+        long rows = bulkConversionService.convertNdjson(new BufferedReader(new StringReader(input)), output);
+        
+        String[] lines = output.toString().split("\n");
+        assertEquals(3, rows);
+        assertEquals(3, lines.length);
+        assertEquals("{\"amount\":\"100\",\"from\":\"EUR\",\"to\":\"USD\",\"rate\":1.080000,\"converted\":108.000000}", lines[0]);
+        assertEquals("{\"amount\":\"1\",\"from\":\"EUR\",\"to\":null,\"error\":\"Expected amount, from and to\"}", lines[1]);
+        assertEquals(true, lines[2].contains("\"error\":\"Invalid row"));
+    }
+}
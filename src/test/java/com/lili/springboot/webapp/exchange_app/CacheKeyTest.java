@@ -0,0 +1,64 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.lili.springboot.webapp.exchange_app.model.CacheKey;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+
+/**
+ * Tests for the ordinal and bitset based CacheKey
+ */
+class CacheKeyTest {
+
+    @BeforeAll
+    static void registerCurrencies() {
+        // Codes get their ordinals from provider data
+        RateTable.of("EUR", Map.of("USD", BigDecimal.ONE, "NZD", BigDecimal.ONE, "GBP", BigDecimal.ONE,
+            "EUR", BigDecimal.ONE), Instant.now());
+    }
+
+    @Test
+    void testParsedKeyMatchesKeyFromSet() {
+        CacheKey parsed = CacheKey.parse("eur", " usd,NZD ,, gbp,USD");
+        CacheKey fromSet = CacheKey.of("EUR", Set.of("USD", "NZD", "GBP"));
+        
+        assertEquals(fromSet, parsed);
+        assertEquals(fromSet.hashCode(), parsed.hashCode());
+        assertEquals("EUR", parsed.getBaseCurrency());
+        assertEquals(Set.of("USD", "NZD", "GBP"), parsed.getSymbols());
+    }
+
+    @Test
+    void testDifferentSymbolsOrBaseGiveDifferentKeys() {
+        CacheKey key = CacheKey.parse("EUR", "USD,GBP");
+        
+        assertNotEquals(key, CacheKey.parse("EUR", "USD"));
+        assertNotEquals(key, CacheKey.parse("NZD", "USD,GBP"));
+    }
+
+    @Test
+    void testUnknownSymbolsAreKeptByName() {
+        CacheKey key = CacheKey.parse("XYZ", "usd, zzq");
+        
+        assertEquals("XYZ", key.getBaseCurrency());
+        assertEquals(-1, key.getBaseOrdinal());
+        assertArrayEquals(new String[] {"ZZQ"}, key.getUnresolvedSymbols());
+        assertEquals(key, CacheKey.of("xyz", Set.of("ZZQ", "USD")));
+    }
+
+    @Test
+    void testBlankSymbolsGiveNoSymbols() {
+        assertFalse(CacheKey.parse("EUR", " , ,").hasSymbols());
+    }
+}
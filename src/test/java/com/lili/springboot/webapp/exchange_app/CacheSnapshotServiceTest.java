@@ -0,0 +1,80 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+import com.lili.springboot.webapp.exchange_app.service.CacheSnapshotService;
+import com.lili.springboot.webapp.exchange_app.service.ExchangeRateService;
+import com.lili.springboot.webapp.exchange_app.service.MetricsService;
+
+/**
+ * Tests for writing the rate cache to a snapshot file and restoring it on startup
+ */
+class CacheSnapshotServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private ExchangeRateProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ExchangeRateProperties();
+        properties.setCacheTtl(Duration.ofSeconds(300));
+        properties.setStaleTtl(Duration.ofSeconds(3600));
+        properties.setCacheSnapshotFile(directory.resolve("rate-cache.snapshot").toString());
+    }
+
+    @Test
+    void testSnapshotRestoresTablesWithTheirOriginalAge() {
+        Instant now = Instant.now();
+        RateTable fresh = RateTable.of("EUR", Map.of("USD", new BigDecimal("1.0812"), "1INCH", new BigDecimal("3.75")),
+            now.minusSeconds(10));
+        RateTable stale = RateTable.of("USD", Map.of("JPY", new BigDecimal("149.87")), now.minusSeconds(400));
+        RateTable expired = RateTable.of("GBP", Map.of("USD", new BigDecimal("1.27")), now.minusSeconds(5000));
+        
+        ExchangeRateService before = newService();
+        assertEquals(2, before.restoreTables(List.of(fresh, stale, expired)));
+        new CacheSnapshotService(before, properties).writeSnapshot();
+        
+        // Un proceso nuevo arranca con la caché del snapshot, sin consultar a los proveedores
+        ExchangeRateService after = newService();
+        new CacheSnapshotService(after, properties).restoreSnapshot();
+        
+        assertEquals(2, after.getCachedTables().size());
+        RateTable restored = after.getRateTable("EUR");
+        assertEquals(fresh.getFetchedAt(), restored.getFetchedAt());
+        assertEquals(fresh.getRates(), restored.getRates());
+        // La tabla de USD sigue vencida respecto al TTL y se sirve como stale
+        assertEquals(1, after.getCacheStatistics().getStaleEntries());
+    }
+
+    @Test
+    void testCorruptSnapshotMeansColdStart() throws Exception {
+        Files.write(Path.of(properties.getCacheSnapshotFile()), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        
+        ExchangeRateService service = newService();
+        new CacheSnapshotService(service, properties).restoreSnapshot();
+        
+        assertTrue(service.getCachedTables().isEmpty());
+    }
+
+    private ExchangeRateService newService() {
+        return new ExchangeRateService(List.of(), new MetricsService(), properties, Executors.newCachedThreadPool());
+    }
+}
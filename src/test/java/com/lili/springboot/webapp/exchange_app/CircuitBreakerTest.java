@@ -0,0 +1,80 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.service.CircuitBreaker;
+import com.lili.springboot.webapp.exchange_app.service.CircuitBreaker.State;
+
+/**
+ * Tests for the per-provider CircuitBreaker state machine
+ */
+class CircuitBreakerTest {
+
+    private static final Duration FAST = Duration.ofMillis(10);
+
+    private ExchangeRateProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ExchangeRateProperties();
+        properties.setBreakerWindowSize(10);
+        properties.setBreakerMinimumCalls(4);
+        properties.setBreakerFailureRateThreshold(50);
+        properties.setBreakerSlowCallRateThreshold(75);
+        properties.setBreakerSlowCallDuration(Duration.ofMillis(500));
+        properties.setBreakerOpenDuration(Duration.ofMillis(100));
+        properties.setBreakerHalfOpenCalls(2);
+    }
+
+    @Test
+    void testOpensOnFailureRateAndClosesAfterSuccessfulProbes() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("frankfurter", properties);
+        breaker.onSuccess(FAST);
+        breaker.onError();
+        breaker.onSuccess(FAST);
+        assertEquals(State.CLOSED, breaker.getState());
+        
+        // 2 de 4 llamadas fallidas: 50% abre el breaker y las llamadas se rechazan sin llegar al proveedor
+        breaker.onError();
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        
+        // Pasado open-duration solo entran half-open-calls sondas
+        Thread.sleep(150);
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(0f, breaker.getFailureRate());
+    }
+
+    @Test
+    void testSlowCallsOpenAndFailedProbeReopens() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("freeCurrencyRates", properties);
+        Duration slow = Duration.ofMillis(800);
+        breaker.onSuccess(slow);
+        breaker.onSuccess(slow);
+        breaker.onSuccess(FAST);
+        assertEquals(State.CLOSED, breaker.getState());
+        breaker.onSuccess(slow);
+        assertEquals(State.OPEN, breaker.getState());
+        
+        Thread.sleep(150);
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onError();
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+}
@@ -0,0 +1,70 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.controller.ConversionController;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+import com.lili.springboot.webapp.exchange_app.service.BulkConversionService;
+import com.lili.springboot.webapp.exchange_app.service.ExchangeRateService;
+import com.lili.springboot.webapp.exchange_app.service.MetricsService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConversionControllerTest {
+
+    @Mock
+    private ExchangeRateService exchangeRateService;
+    
+    private MockMvc mockMvc;
+    
+    @BeforeEach
+    void setUp() {
+        BulkConversionService bulkConversionService =
+            new BulkConversionService(exchangeRateService, new MetricsService(), new ExchangeRateProperties(), new ObjectMapper());
+        mockMvc = MockMvcBuilders.standaloneSetup(new ConversionController(bulkConversionService)).build();
+    }
+    
+    @Test
+    void testConvert_CsvInCsvOut() throws Exception {
+        when(exchangeRateService.getRateTable("EUR")).thenReturn(RateTable.of("EUR",
+            Map.of("USD", new BigDecimal("1.08")), Instant.now()));
+        
+        MvcResult result = mockMvc.perform(post("/convert")
+                .contentType("text/csv")
+                .accept("text/csv")
+                .content("100,EUR,USD\n"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("text/csv"))
+            .andExpect(content().string("amount,from,to,rate,converted,error\n100,EUR,USD,1.080000,108.000000,\n"));
+    }
+    
+    @Test
+    void testConvert_UnsupportedMediaType() throws Exception {
+        mockMvc.perform(post("/convert")
+                .contentType(MediaType.APPLICATION_XML)
+                .content("<rows/>"))
+            .andExpect(status().isUnsupportedMediaType());
+    }
+}
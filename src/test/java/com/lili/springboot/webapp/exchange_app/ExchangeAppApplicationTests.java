@@ -3,7 +3,9 @@ package com.lili.springboot.webapp.exchange_app;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+    "app.exchange-rate.cache-snapshot-file=",
+    "app.exchange-rate.history-directory=target/test-history"})
 class ExchangeAppApplicationTests {
 
 	@Test
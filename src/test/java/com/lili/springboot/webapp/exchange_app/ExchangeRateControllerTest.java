@@ -1,23 +1,48 @@
 package com.lili.springboot.webapp.exchange_app;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lili.springboot.webapp.exchange_app.config.ApplicationConfig;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
 import com.lili.springboot.webapp.exchange_app.controller.ExchangeRateController;
+import com.lili.springboot.webapp.exchange_app.model.CacheKey;
 import com.lili.springboot.webapp.exchange_app.model.ExchangeRateResponse;
 import com.lili.springboot.webapp.exchange_app.service.ExchangeRateService;
+import com.lili.springboot.webapp.exchange_app.service.HistoricalRateService;
+import com.lili.springboot.webapp.exchange_app.service.OverloadedException;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
-import static org.mockito.ArgumentMatchers.any;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -27,12 +52,22 @@ class ExchangeRateControllerTest {
     @Mock
     private ExchangeRateService exchangeRateService;
     
+    @Mock
+    private HistoricalRateService historicalRateService;
+    
     private MockMvc mockMvc;
     
     @BeforeEach
     void setUp() {
-        ExchangeRateController controller = new ExchangeRateController(exchangeRateService);
-        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        // Comprimir cualquier tamaño para poder probar gzip con respuestas chicas
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setResponseGzipMinSize(0);
+        ObjectMapper objectMapper = new ApplicationConfig().objectMapper();
+        ExchangeRateController controller = new ExchangeRateController(exchangeRateService, historicalRateService,
+            properties, objectMapper);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+            .setMessageConverters(new ByteArrayHttpMessageConverter(), new MappingJackson2HttpMessageConverter(objectMapper))
+            .build();
     }
     
     @Test
@@ -43,11 +78,11 @@ class ExchangeRateControllerTest {
             Map.of("USD", new BigDecimal("1.08"))
         );
         
-        when(exchangeRateService.getExchangeRates(eq("EUR"), any()))
-            .thenReturn(mockResponse);
+        when(exchangeRateService.getExchangeRatesReactive(argThat((CacheKey key) -> key.getBaseCurrency().equals("EUR"))))
+            .thenReturn(Mono.just(mockResponse));
         
         // Act & Assert - Ruta corregida según tu controller
-        mockMvc.perform(get("/exchangeRates/EUR?symbols=USD"))
+        mockMvc.perform(asyncDispatch(startAsync("/exchangeRates/EUR?symbols=USD")))
             .andExpect(status().isOk())
             .andExpect(content().contentType("application/json"))
             .andExpect(jsonPath("$.base").value("EUR"))
@@ -68,7 +103,7 @@ class ExchangeRateControllerTest {
     @Test
     void testGetExchangeRates_BadRequest_EmptySymbols() throws Exception {
         // Test con symbols vacío - debería dar 400
-        mockMvc.perform(get("/exchangeRates/EUR?symbols="))
+        mockMvc.perform(asyncDispatch(startAsync("/exchangeRates/EUR?symbols=")))
             .andExpect(status().isBadRequest());
         
         System.out.println("✅ Validación symbols vacío funciona");
@@ -85,10 +120,10 @@ class ExchangeRateControllerTest {
             )
         );
         
-        when(exchangeRateService.getExchangeRates(eq("EUR"), any()))
-            .thenReturn(mockResponse);
+        when(exchangeRateService.getExchangeRatesReactive(argThat((CacheKey key) -> key.getBaseCurrency().equals("EUR"))))
+            .thenReturn(Mono.just(mockResponse));
         
-        mockMvc.perform(get("/exchangeRates/EUR?symbols=USD,NZD"))
+        mockMvc.perform(asyncDispatch(startAsync("/exchangeRates/EUR?symbols=USD,NZD")))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.base").value("EUR"))
             .andExpect(jsonPath("$.rates.USD").value(1.08))
@@ -102,12 +137,130 @@ class ExchangeRateControllerTest {
         // Test cuando el servicio retorna rates vacío
         ExchangeRateResponse mockResponse = new ExchangeRateResponse("EUR", Map.of());
         
-        when(exchangeRateService.getExchangeRates(eq("EUR"), any()))
-            .thenReturn(mockResponse);
+        when(exchangeRateService.getExchangeRatesReactive(argThat((CacheKey key) -> key.getBaseCurrency().equals("EUR"))))
+            .thenReturn(Mono.just(mockResponse));
         
-        mockMvc.perform(get("/exchangeRates/EUR?symbols=USD"))
+        mockMvc.perform(asyncDispatch(startAsync("/exchangeRates/EUR?symbols=USD")))
             .andExpect(status().isNotFound());
         
         System.out.println("✅ Manejo de respuesta vacía funciona");
     }
+    
+    @Test
+    void testGetExchangeRates_OverloadedReturns429() throws Exception {
+        // Un miss descartado por sobrecarga se responde con 429 y Retry-After en segundos
+        when(exchangeRateService.getExchangeRatesReactive(argThat((CacheKey key) -> key.getBaseCurrency().equals("EUR"))))
+            .thenReturn(Mono.error(new OverloadedException("EUR", Duration.ofMillis(1500))));
+        
+        mockMvc.perform(asyncDispatch(startAsync("/exchangeRates/EUR?symbols=USD")))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string("Retry-After", "2"));
+    }
+    
+    @Test
+    void testGetExchangeRates_HistoricalDateStoreError() throws Exception {
+        // Un segmento dañado no debe escapar como un 500 sin registrar
+        when(historicalRateService.getExchangeRates(argThat((CacheKey key) -> key.getBaseCurrency().equals("EUR")),
+                eq(LocalDate.of(2024, 1, 5))))
+            .thenThrow(new UncheckedIOException(new IOException("Corrupt segment")));
+        
+        mockMvc.perform(asyncDispatch(startAsync("/exchangeRates/EUR?symbols=USD&date=2024-01-05")))
+            .andExpect(status().isInternalServerError());
+        verifyNoInteractions(exchangeRateService);
+    }
+    
+    @Test
+    void testGetExchangeRates_HistoricalDate() throws Exception {
+        // Con date se responde desde el historial local, sin pasar por el servicio en vivo
+        ExchangeRateResponse mockResponse = new ExchangeRateResponse("EUR", Map.of("USD", new BigDecimal("1.09")));
+        mockResponse.setDate(LocalDate.of(2024, 1, 5));
+        
+        when(historicalRateService.getExchangeRates(argThat((CacheKey key) -> key.getBaseCurrency().equals("EUR")),
+                eq(LocalDate.of(2024, 1, 6))))
+            .thenReturn(mockResponse);
+        
+        mockMvc.perform(asyncDispatch(startAsync("/exchangeRates/EUR?symbols=USD&date=2024-01-06")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.date").value("2024-01-05"))
+            .andExpect(jsonPath("$.rates.USD").value(1.09));
+        verifyNoInteractions(exchangeRateService);
+    }
+    
+    @Test
+    void testStreamExchangeRates_SnapshotThenUpdates() throws Exception {
+        when(exchangeRateService.streamExchangeRates(argThat((CacheKey key) -> key.getBaseCurrency().equals("EUR"))))
+            .thenReturn(Flux.just(
+                new ExchangeRateResponse("EUR", Map.of("USD", new BigDecimal("1.08"))),
+                new ExchangeRateResponse("EUR", Map.of("USD", new BigDecimal("1.10")))));
+        
+        mockMvc.perform(asyncDispatch(startAsync("/exchangeRates/EUR/stream?symbols=USD")))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("text/event-stream"))
+            .andExpect(content().string(containsString("event:snapshot\ndata:{\"base\":\"EUR\",\"rates\":{\"USD\":1.08}}")))
+            .andExpect(content().string(containsString("event:update\ndata:{\"base\":\"EUR\",\"rates\":{\"USD\":1.10}}")));
+    }
+    
+    // The handler returns a Mono, so the response is only written on the async dispatch
+    @Test
+    void testGetExchangeRates_ETagAndNotModified() throws Exception {
+        // Respuesta con validador, fresca por 5 minutos más
+        ExchangeRateResponse mockResponse = new ExchangeRateResponse("EUR", Map.of("USD", new BigDecimal("1.08")));
+        mockResponse.setEtag("\"1a2b3c\"");
+        mockResponse.setFreshUntil(Instant.now().plusSeconds(300));
+        when(exchangeRateService.getExchangeRatesReactive(argThat((CacheKey key) -> key.getBaseCurrency().equals("EUR"))))
+            .thenReturn(Mono.just(mockResponse));
+        
+        mockMvc.perform(asyncDispatch(startAsync("/exchangeRates/EUR?symbols=USD")))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"1a2b3c\""))
+            .andExpect(header().string("Cache-Control", containsString("max-age=")))
+            .andExpect(jsonPath("$.etag").doesNotExist());
+        
+        // El cliente revalida con el ETag: 304 sin body
+        MvcResult async = mockMvc.perform(get("/exchangeRates/EUR?symbols=USD").header("If-None-Match", "\"1a2b3c\""))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        mockMvc.perform(asyncDispatch(async))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", "\"1a2b3c\""))
+            .andExpect(content().string(""));
+    }
+    
+    @Test
+    void testGetExchangeRates_PreEncodedAndGzipped() throws Exception {
+        ExchangeRateResponse mockResponse = new ExchangeRateResponse("EUR", Map.of("USD", new BigDecimal("1.08")));
+        mockResponse.setEtag("\"1a2b3c\"");
+        when(exchangeRateService.getExchangeRatesReactive(argThat((CacheKey key) -> key.getBaseCurrency().equals("EUR"))))
+            .thenReturn(Mono.just(mockResponse));
+        
+        // Primer hit: el JSON queda guardado en la respuesta y se reutiliza
+        mockMvc.perform(asyncDispatch(startAsync("/exchangeRates/EUR?symbols=USD")))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("Content-Encoding"))
+            .andExpect(jsonPath("$.rates.USD").value(1.08));
+        byte[] json = mockResponse.getJson();
+        assertNotNull(json);
+        
+        // Cliente que acepta gzip: body comprimido, con su propio ETag
+        MvcResult async = mockMvc.perform(get("/exchangeRates/EUR?symbols=USD").header("Accept-Encoding", "br, gzip"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(async))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andExpect(header().string("ETag", "\"1a2b3c-gzip\""))
+            .andExpect(header().string("Vary", containsString("Accept-Encoding")))
+            .andReturn();
+        
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertArrayEquals(json, gzip.readAllBytes());
+        }
+        assertSame(json, mockResponse.getJson());
+    }
+    
+    private MvcResult startAsync(String url) throws Exception {
+        return mockMvc.perform(get(url))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    }
 }
\ No newline at end of file
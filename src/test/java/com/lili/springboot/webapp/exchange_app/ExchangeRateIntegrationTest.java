@@ -10,7 +10,9 @@ import org.springframework.http.ResponseEntity;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "app.exchange-rate.cache-snapshot-file=",
+    "app.exchange-rate.history-directory=target/test-history"})
 class ExchangeRateIntegrationTest {
 
     @LocalServerPort
@@ -2,27 +2,49 @@ package com.lili.springboot.webapp.exchange_app;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.BatchResult;
+import com.lili.springboot.webapp.exchange_app.model.CacheKey;
 import com.lili.springboot.webapp.exchange_app.model.ExchangeRateResponse;
 import com.lili.springboot.webapp.exchange_app.service.ExchangeRateApiClient;
 import com.lili.springboot.webapp.exchange_app.service.ExchangeRateService;
 import com.lili.springboot.webapp.exchange_app.service.MetricsService;
+import com.lili.springboot.webapp.exchange_app.service.OverloadedException;
+import com.lili.springboot.webapp.exchange_app.service.ReactiveExchangeRateApiClient;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 /**
  * Unit tests for ExchangeRateService
@@ -33,6 +55,9 @@ import com.lili.springboot.webapp.exchange_app.service.MetricsService;
 @ExtendWith(MockitoExtension.class)
 public class ExchangeRateServiceTest {
 
+    // Providers are always asked for their whole table of the base currency
+    private static final Set<String> FULL_TABLE = Set.of();
+
      @Mock
     private ExchangeRateApiClient mockApiClient1;
     
@@ -42,19 +67,27 @@ public class ExchangeRateServiceTest {
     @Mock
     private MetricsService mockMetricsService;
     
+    // Runs the provider calls of every service built by a test, shut down after it
+    private ExecutorService providerExecutor;
     private ExchangeRateService exchangeRateService;
     
     @BeforeEach
     void setUp() {
         // Create service with mock dependencies
+        providerExecutor = Executors.newCachedThreadPool();
         List<ExchangeRateApiClient> apiClients = Arrays.asList(mockApiClient1, mockApiClient2);
-        exchangeRateService = new ExchangeRateService(apiClients, mockMetricsService);
+        exchangeRateService = new ExchangeRateService(apiClients, mockMetricsService, new ExchangeRateProperties(), providerExecutor);
         
         // Setup mock names
         when(mockApiClient1.getApiName()).thenReturn("api1");
         when(mockApiClient2.getApiName()).thenReturn("api2");
     }
     
+    @AfterEach
+    void tearDown() {
+        providerExecutor.shutdownNow();
+    }
+    
     @Test
     void testGetExchangeRates_Success() {
         // Arrange - Set up test data
@@ -72,8 +105,8 @@ public class ExchangeRateServiceTest {
             "NZD", new BigDecimal("1.58")
         );
         
-        when(mockApiClient1.getExchangeRates(baseCurrency, symbols)).thenReturn(rates1);
-        when(mockApiClient2.getExchangeRates(baseCurrency, symbols)).thenReturn(rates2);
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(rates1);
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(rates2);
         
         // Act - Execute the method we're testing
         ExchangeRateResponse response = exchangeRateService.getExchangeRates(baseCurrency, symbols);
@@ -101,8 +134,8 @@ public class ExchangeRateServiceTest {
         
         Map<String, BigDecimal> rates = Map.of("USD", new BigDecimal("1.08"));
         
-        when(mockApiClient1.getExchangeRates(baseCurrency, symbols)).thenReturn(rates);
-        when(mockApiClient2.getExchangeRates(baseCurrency, symbols))
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(rates);
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE))
             .thenThrow(new RuntimeException("API failure"));
         
         // Should still return result from working API
@@ -115,6 +148,33 @@ public class ExchangeRateServiceTest {
         verify(mockMetricsService).incrementApiErrors("api2");
     }
     
+    @Test
+    void testOpenCircuitBreakerSkipsFailingProvider() {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setBreakerWindowSize(2);
+        properties.setBreakerMinimumCalls(2);
+        properties.setBreakerOpenDuration(Duration.ofMinutes(1));
+        ExchangeRateService breakerService = new ExchangeRateService(
+            Arrays.asList(mockApiClient1, mockApiClient2), mockMetricsService, properties,
+            providerExecutor);
+        
+        String baseCurrency = "EUR";
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(Map.of("USD", new BigDecimal("1.08")));
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE)).thenThrow(new RuntimeException("API failure"));
+        
+        // Dos fallos abren el breaker de api2, los siguientes misses ya no esperan por él
+        for (int i = 0; i < 4; i++) {
+            ExchangeRateResponse response = breakerService.getExchangeRates(baseCurrency, Set.of("USD"));
+            assertEquals(new BigDecimal("1.080000"), response.getRates().get("USD"));
+            breakerService.clearCache();
+        }
+        
+        verify(mockApiClient1, times(4)).getExchangeRates(baseCurrency, FULL_TABLE);
+        verify(mockApiClient2, times(2)).getExchangeRates(baseCurrency, FULL_TABLE);
+        verify(mockMetricsService, times(2)).incrementApiErrors("api2");
+        verify(mockMetricsService, times(2)).incrementApiRejections("api2");
+    }
+    
     @Test
     void testCaching() {
         // Test that subsequent calls use cache
@@ -122,8 +182,8 @@ public class ExchangeRateServiceTest {
         Set<String> symbols = Set.of("USD");
         
         Map<String, BigDecimal> rates = Map.of("USD", new BigDecimal("1.08"));
-        when(mockApiClient1.getExchangeRates(baseCurrency, symbols)).thenReturn(rates);
-        when(mockApiClient2.getExchangeRates(baseCurrency, symbols)).thenReturn(rates);
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(rates);
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(rates);
         
         // First call
         ExchangeRateResponse response1 = exchangeRateService.getExchangeRates(baseCurrency, symbols);
@@ -135,11 +195,466 @@ public class ExchangeRateServiceTest {
         assertEquals(response1.getRates(), response2.getRates());
         
         // API clients should only be called once (first time)
-        verify(mockApiClient1, times(1)).getExchangeRates(baseCurrency, symbols);
-        verify(mockApiClient2, times(1)).getExchangeRates(baseCurrency, symbols);
+        verify(mockApiClient1, times(1)).getExchangeRates(baseCurrency, FULL_TABLE);
+        verify(mockApiClient2, times(1)).getExchangeRates(baseCurrency, FULL_TABLE);
         
         // Metrics should be incremented twice (once per query)
         verify(mockMetricsService, times(2)).incrementTotalQueries();
     }
 
+    @Test
+    void testParallelFetch_SlowApiTimesOut() {
+        // api1 has a tight deadline and answers late, api2 answers right away
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setProviderTimeouts(Map.of("api1", Duration.ofMillis(100)));
+        ExchangeRateService parallelService = new ExchangeRateService(
+            Arrays.asList(mockApiClient1, mockApiClient2), mockMetricsService, properties,
+            providerExecutor);
+        
+        String baseCurrency = "EUR";
+        Set<String> symbols = Set.of("USD");
+        
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE)).thenAnswer(invocation -> {
+            // Cancelado al vencer el plazo: termina sin lanzar, nadie espera ya su respuesta
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                return Map.of();
+            }
+            return Map.of("USD", new BigDecimal("9.99"));
+        });
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE))
+            .thenReturn(Map.of("USD", new BigDecimal("1.08")));
+        
+        long start = System.nanoTime();
+        ExchangeRateResponse response = parallelService.getExchangeRates(baseCurrency, symbols);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        
+        // Only the provider that answered in time is averaged, and we did not wait for the slow one
+        assertEquals(new BigDecimal("1.080000"), response.getRates().get("USD"));
+        assertTrue(elapsedMillis < 1000, "Miss took " + elapsedMillis + " ms");
+        
+        verify(mockMetricsService).incrementApiTimeouts("api1");
+        verify(mockMetricsService).incrementApiResponses("api2");
+        verify(mockMetricsService, never()).incrementApiErrors(anyString());
+    }
+
+    @Test
+    void testGetExchangeRatesReactive_MixesReactiveAndBlockingClients() {
+        // A reactive client is subscribed to directly, blocking ones run on the provider executor
+        ReactiveExchangeRateApiClient reactiveClient = mock(ReactiveExchangeRateApiClient.class);
+        when(reactiveClient.getApiName()).thenReturn("reactive");
+        ExchangeRateService reactiveService = new ExchangeRateService(
+            Arrays.asList(reactiveClient, mockApiClient1, mockApiClient2), mockMetricsService,
+            new ExchangeRateProperties(), providerExecutor);
+        
+        String baseCurrency = "EUR";
+        Set<String> symbols = Set.of("USD");
+        
+        when(reactiveClient.fetchExchangeRates(baseCurrency, FULL_TABLE))
+            .thenReturn(Mono.just(Map.of("USD", new BigDecimal("1.08"))));
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE))
+            .thenReturn(Map.of("USD", new BigDecimal("1.06")));
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE))
+            .thenReturn(Map.of("USD", new BigDecimal("1.07")));
+        
+        StepVerifier.create(reactiveService.getExchangeRatesReactive(baseCurrency, symbols))
+            .assertNext(response -> assertEquals(new BigDecimal("1.070000"), response.getRates().get("USD")))
+            .verifyComplete();
+        
+        // Second subscription is served from the cache
+        StepVerifier.create(reactiveService.getExchangeRatesReactive(baseCurrency, symbols))
+            .assertNext(response -> assertEquals(new BigDecimal("1.070000"), response.getRates().get("USD")))
+            .verifyComplete();
+        
+        verify(reactiveClient, times(1)).fetchExchangeRates(baseCurrency, FULL_TABLE);
+        verify(reactiveClient, never()).getExchangeRates(anyString(), anySet());
+        verify(mockMetricsService, times(2)).incrementTotalQueries();
+    }
+
+    @Test
+    void testConcurrentMisses_ShareOneUpstreamFetch() throws Exception {
+        // A burst of identical requests arrives while the first fetch is still in flight
+        String baseCurrency = "EUR";
+        Set<String> symbols = Set.of("USD", "GBP");
+        int callers = 20;
+        
+        CountDownLatch allWaiting = new CountDownLatch(callers);
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE)).thenAnswer(invocation -> {
+            allWaiting.await();
+            Thread.sleep(100);
+            return Map.of("USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.85"));
+        });
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE))
+            .thenReturn(Map.of("USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.85")));
+        
+        ExecutorService callerExecutor = Executors.newFixedThreadPool(callers);
+        List<Future<ExchangeRateResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            futures.add(callerExecutor.submit(() -> {
+                allWaiting.countDown();
+                return exchangeRateService.getExchangeRates(baseCurrency, Set.of("usd", "gbp"));
+            }));
+        }
+        try {
+            for (Future<ExchangeRateResponse> future : futures) {
+                assertEquals(new BigDecimal("1.080000"), future.get().getRates().get("USD"));
+            }
+        } finally {
+            callerExecutor.shutdownNow();
+        }
+        
+        // Every provider was queried once, every caller was counted as a query
+        verify(mockApiClient1, times(1)).getExchangeRates(baseCurrency, FULL_TABLE);
+        verify(mockApiClient2, times(1)).getExchangeRates(baseCurrency, FULL_TABLE);
+        verify(mockMetricsService, times(1)).incrementApiRequests("api1");
+        verify(mockMetricsService, times(callers)).incrementTotalQueries();
+    }
+
+    @Test
+    void testMissesBeyondTheConcurrencyLimitAreShed() throws Exception {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setMaxConcurrentMisses(1);
+        properties.setTriangulate(false);
+        ExchangeRateService limitedService = new ExchangeRateService(
+            Arrays.asList(mockApiClient1, mockApiClient2), mockMetricsService, properties,
+            providerExecutor);
+        
+        // La primera petición ocupa el único permiso mientras el proveedor no responde
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockApiClient1.getExchangeRates("EUR", FULL_TABLE)).thenAnswer(invocation -> {
+            release.await();
+            return Map.of("USD", new BigDecimal("1.08"));
+        });
+        when(mockApiClient2.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of("USD", new BigDecimal("1.08")));
+        when(mockApiClient1.getExchangeRates("GBP", FULL_TABLE)).thenReturn(Map.of("USD", new BigDecimal("1.25")));
+        when(mockApiClient2.getExchangeRates("GBP", FULL_TABLE)).thenReturn(Map.of("USD", new BigDecimal("1.25")));
+        
+        Mono<ExchangeRateResponse> eur = limitedService.getExchangeRatesReactive("EUR", Set.of("USD")).cache();
+        eur.subscribe();
+        
+        // Otra base no espera detrás: se rechaza enseguida con el tiempo de reintento
+        StepVerifier.create(limitedService.getExchangeRatesReactive("GBP", Set.of("USD")))
+            .expectErrorSatisfies(error -> {
+                assertTrue(error instanceof OverloadedException);
+                assertEquals(properties.getOverloadRetryAfter(), ((OverloadedException) error).getRetryAfter());
+            })
+            .verify(Duration.ofSeconds(2));
+        verify(mockMetricsService).incrementShedMisses();
+        verify(mockApiClient1, never()).getExchangeRates("GBP", FULL_TABLE);
+        
+        // Al terminar la primera descarga el permiso vuelve y GBP se puede pedir
+        release.countDown();
+        assertEquals(new BigDecimal("1.080000"), eur.block(Duration.ofSeconds(2)).getRates().get("USD"));
+        ExchangeRateResponse gbp = limitedService.getExchangeRatesReactive("GBP", Set.of("USD")).block(Duration.ofSeconds(2));
+        assertEquals(new BigDecimal("1.250000"), gbp.getRates().get("USD"));
+    }
+
+    @Test
+    void testCacheEntriesExpireAfterTtl() throws Exception {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setCacheTtl(Duration.ofMillis(200));
+        properties.setStaleTtl(Duration.ZERO);
+        ExchangeRateService ttlService = new ExchangeRateService(
+            Arrays.asList(mockApiClient1, mockApiClient2), mockMetricsService, properties,
+            providerExecutor);
+        
+        String baseCurrency = "EUR";
+        Set<String> symbols = Set.of("USD");
+        Map<String, BigDecimal> rates = Map.of("USD", new BigDecimal("1.08"));
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(rates);
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(rates);
+        
+        ttlService.getExchangeRates(baseCurrency, symbols);
+        ttlService.getExchangeRates(baseCurrency, symbols);
+        assertEquals(1, ttlService.getCacheStatistics().getHitCount());
+        assertEquals(1, ttlService.getCacheStatistics().getMissCount());
+        
+        // Once the TTL has passed the entry is gone and the providers are queried again
+        Thread.sleep(300);
+        ttlService.getExchangeRates(baseCurrency, symbols);
+        
+        verify(mockApiClient1, times(2)).getExchangeRates(baseCurrency, FULL_TABLE);
+        assertEquals(2, ttlService.getCacheStatistics().getMissCount());
+    }
+
+    @Test
+    void testDifferentSymbolSetsShareOneBaseTable() {
+        // Providers return their full EUR table, any subset of it is served without another fetch
+        String baseCurrency = "EUR";
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.85"), "JPY", new BigDecimal("160.00")));
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.06"), "GBP", new BigDecimal("0.87")));
+        
+        ExchangeRateResponse first = exchangeRateService.getExchangeRates(baseCurrency, Set.of("USD", "GBP"));
+        ExchangeRateResponse second = exchangeRateService.getExchangeRates(baseCurrency, Set.of("GBP", "USD", "JPY"));
+        
+        assertEquals(Map.of("USD", new BigDecimal("1.070000"), "GBP", new BigDecimal("0.860000")), first.getRates());
+        assertEquals(3, second.getRates().size());
+        // Only one provider knows JPY, so its rate is used as is
+        assertEquals(new BigDecimal("160.000000"), second.getRates().get("JPY"));
+        
+        verify(mockApiClient1, times(1)).getExchangeRates(baseCurrency, FULL_TABLE);
+        verify(mockApiClient2, times(1)).getExchangeRates(baseCurrency, FULL_TABLE);
+        assertEquals(1, exchangeRateService.getCacheSize());
+    }
+
+    @Test
+    void testCrossRatesAreTriangulatedFromPivotTable() {
+        // Only the EUR pivot table is fetched, USD rates are derived from it
+        when(mockApiClient1.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.86"), "JPY", new BigDecimal("162.00")));
+        when(mockApiClient2.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.86")));
+        
+        ExchangeRateResponse usd = exchangeRateService.getExchangeRates("USD", Set.of("GBP", "EUR", "JPY"));
+        ExchangeRateResponse gbp = exchangeRateService.getExchangeRates("GBP", Set.of("USD"));
+        
+        assertEquals("USD", usd.getBase());
+        assertEquals(new BigDecimal("0.796296"), usd.getRates().get("GBP")); // 0.86 / 1.08
+        assertEquals(new BigDecimal("0.925926"), usd.getRates().get("EUR")); // 1 / 1.08
+        assertEquals(new BigDecimal("150.000000"), usd.getRates().get("JPY")); // 162 / 1.08
+        assertEquals(new BigDecimal("1.255814"), gbp.getRates().get("USD")); // 1.08 / 0.86
+        
+        verify(mockApiClient1, times(1)).getExchangeRates("EUR", FULL_TABLE);
+        verify(mockApiClient1, never()).getExchangeRates("USD", FULL_TABLE);
+        verify(mockApiClient1, never()).getExchangeRates("GBP", FULL_TABLE);
+    }
+
+    @Test
+    void testFreshDirectRatesOverrideDerivedOnes() throws Exception {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setPreferDirectRates(true);
+        properties.setRefreshRetryInterval(Duration.ZERO);
+        ExchangeRateService directService = new ExchangeRateService(
+            Arrays.asList(mockApiClient1, mockApiClient2), mockMetricsService, properties,
+            providerExecutor);
+        
+        when(mockApiClient1.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.86")));
+        when(mockApiClient2.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.86")));
+        when(mockApiClient1.getExchangeRates("USD", FULL_TABLE)).thenReturn(Map.of("GBP", new BigDecimal("0.80")));
+        when(mockApiClient2.getExchangeRates("USD", FULL_TABLE)).thenReturn(Map.of("GBP", new BigDecimal("0.80")));
+        
+        // Mientras no hay tabla directa se responde con la derivada y la directa se pide en segundo plano
+        ExchangeRateResponse derived = directService.getExchangeRates("USD", Set.of("GBP"));
+        assertEquals(new BigDecimal("0.796296"), derived.getRates().get("GBP")); // 0.86 / 1.08
+        verify(mockMetricsService, timeout(2000)).incrementBackgroundRefreshes();
+        
+        // Con la tabla directa fresca en caché, sus tasas ganan aunque la tabla pivote sea la misma
+        ExchangeRateResponse direct = directService.getExchangeRates("USD", Set.of("GBP", "EUR"));
+        assertEquals(new BigDecimal("0.800000"), direct.getRates().get("GBP"));
+        assertEquals(new BigDecimal("0.925926"), direct.getRates().get("EUR")); // derivada, 1 / 1.08
+        verify(mockApiClient1, times(1)).getExchangeRates("EUR", FULL_TABLE);
+    }
+    
+    @Test
+    void testStreamReceivesDirectRatesForAnUnchangedPivot() {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setPreferDirectRates(true);
+        properties.setRefreshRetryInterval(Duration.ZERO);
+        ExchangeRateService directService = new ExchangeRateService(
+            Arrays.asList(mockApiClient1, mockApiClient2), mockMetricsService, properties,
+            providerExecutor);
+        
+        when(mockApiClient1.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.86")));
+        when(mockApiClient2.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.86")));
+        // La tabla directa solo llega después de enviar la instantánea derivada
+        CountDownLatch snapshotSent = new CountDownLatch(1);
+        when(mockApiClient1.getExchangeRates("USD", FULL_TABLE)).thenAnswer(invocation -> {
+            snapshotSent.await();
+            return Map.of("GBP", new BigDecimal("0.80"));
+        });
+        when(mockApiClient2.getExchangeRates("USD", FULL_TABLE)).thenAnswer(invocation -> {
+            snapshotSent.await();
+            return Map.of("GBP", new BigDecimal("0.80"));
+        });
+        
+        StepVerifier.create(directService.streamExchangeRates(CacheKey.of("USD", Set.of("GBP"))))
+            .assertNext(snapshot -> assertEquals(new BigDecimal("0.796296"), snapshot.getRates().get("GBP")))
+            .then(snapshotSent::countDown)
+            .assertNext(update -> assertEquals(Map.of("GBP", new BigDecimal("0.800000")), update.getRates()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+        
+        // La tabla pivote no cambió entre la instantánea y la actualización
+        verify(mockApiClient1, times(1)).getExchangeRates("EUR", FULL_TABLE);
+    }
+    
+    @Test
+    void testBaseWithZeroPivotRateIsFetchedDirectly() {
+        // Una tasa pivote en cero no permite derivar la base: se pide su propia tabla en vez de fallar
+        when(mockApiClient1.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of(
+            "USD", BigDecimal.ZERO, "GBP", new BigDecimal("0.86")));
+        when(mockApiClient2.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of(
+            "USD", BigDecimal.ZERO, "GBP", new BigDecimal("0.86")));
+        when(mockApiClient1.getExchangeRates("USD", FULL_TABLE)).thenReturn(Map.of("GBP", new BigDecimal("0.80")));
+        when(mockApiClient2.getExchangeRates("USD", FULL_TABLE)).thenReturn(Map.of("GBP", new BigDecimal("0.80")));
+        
+        ExchangeRateResponse usd = exchangeRateService.getExchangeRates("USD", Set.of("GBP"));
+        assertEquals(new BigDecimal("0.800000"), usd.getRates().get("GBP"));
+        
+        // Ya en caché, la siguiente petición usa la tabla directa sin volver a los proveedores
+        exchangeRateService.getExchangeRates("USD", Set.of("GBP"));
+        verify(mockApiClient1, times(1)).getExchangeRates("USD", FULL_TABLE);
+    }
+    
+    @Test
+    void testStaleTableIsServedWhileRefreshFails() throws Exception {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setCacheTtl(Duration.ofMillis(200));
+        properties.setRefreshRetryInterval(Duration.ZERO);
+        ExchangeRateService staleService = new ExchangeRateService(
+            Arrays.asList(mockApiClient1, mockApiClient2), mockMetricsService, properties,
+            providerExecutor);
+        
+        String baseCurrency = "EUR";
+        Set<String> symbols = Set.of("USD");
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE))
+            .thenReturn(Map.of("USD", new BigDecimal("1.08")))
+            .thenThrow(new RuntimeException("Provider down"))
+            .thenReturn(Map.of("USD", new BigDecimal("1.10")));
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE))
+            .thenReturn(Map.of("USD", new BigDecimal("1.08")))
+            .thenThrow(new RuntimeException("Provider down"))
+            .thenReturn(Map.of("USD", new BigDecimal("1.10")));
+        
+        staleService.getExchangeRates(baseCurrency, symbols);
+        Thread.sleep(300);
+        
+        // Past the TTL the old table is answered right away and the refresh runs in the background
+        ExchangeRateResponse stale = staleService.getExchangeRates(baseCurrency, symbols);
+        assertEquals(new BigDecimal("1.080000"), stale.getRates().get("USD"));
+        verify(mockMetricsService, timeout(2000)).incrementFailedRefreshes();
+        
+        // The failed refresh didn't replace the table, the next request still gets rates
+        ExchangeRateResponse afterFailure = staleService.getExchangeRates(baseCurrency, symbols);
+        assertEquals(new BigDecimal("1.080000"), afterFailure.getRates().get("USD"));
+        verify(mockMetricsService, timeout(2000)).incrementBackgroundRefreshes();
+        
+        ExchangeRateResponse refreshed = staleService.getExchangeRates(baseCurrency, symbols);
+        assertEquals(new BigDecimal("1.100000"), refreshed.getRates().get("USD"));
+        verify(mockMetricsService, times(2)).incrementStaleResponses();
+        verify(mockApiClient1, times(3)).getExchangeRates(baseCurrency, FULL_TABLE);
+    }
+
+    @Test
+    void testHotTablesAreRefreshedAheadOfExpiry() throws Exception {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setCacheTtl(Duration.ofSeconds(1));
+        properties.setRefreshAhead(Duration.ofMillis(800));
+        properties.setRefreshMinHits(2);
+        ExchangeRateService refreshService = new ExchangeRateService(
+            Arrays.asList(mockApiClient1, mockApiClient2), mockMetricsService, properties,
+            providerExecutor);
+        
+        String baseCurrency = "EUR";
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE))
+            .thenReturn(Map.of("USD", new BigDecimal("1.08")))
+            .thenReturn(Map.of("USD", new BigDecimal("1.10")));
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE))
+            .thenReturn(Map.of("USD", new BigDecimal("1.08")))
+            .thenReturn(Map.of("USD", new BigDecimal("1.10")));
+        
+        // One miss and two hits make EUR hot
+        for (int i = 0; i < 3; i++) {
+            refreshService.getExchangeRates(baseCurrency, Set.of("USD"));
+        }
+        
+        // Not yet inside the refresh-ahead window
+        refreshService.refreshExpiringTables();
+        verify(mockApiClient1, times(1)).getExchangeRates(baseCurrency, FULL_TABLE);
+        
+        Thread.sleep(300);
+        refreshService.refreshExpiringTables();
+        verify(mockMetricsService, timeout(2000)).incrementBackgroundRefreshes();
+        
+        // The request after the refresh gets the new rates without calling any provider
+        ExchangeRateResponse response = refreshService.getExchangeRates(baseCurrency, Set.of("USD"));
+        assertEquals(new BigDecimal("1.100000"), response.getRates().get("USD"));
+        verify(mockApiClient1, times(2)).getExchangeRates(baseCurrency, FULL_TABLE);
+        verify(mockMetricsService, never()).incrementStaleResponses();
+    }
+
+    @Test
+    void testRepeatedHitsReuseTheProjectedResponse() {
+        String baseCurrency = "EUR";
+        when(mockApiClient1.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.85")));
+        when(mockApiClient2.getExchangeRates(baseCurrency, FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.06"), "GBP", new BigDecimal("0.87")));
+        
+        ExchangeRateResponse first = exchangeRateService.getExchangeRates(baseCurrency, Set.of("USD", "GBP"));
+        ExchangeRateResponse second = exchangeRateService.getExchangeRates("eur", Set.of("gbp", "usd"));
+        ExchangeRateResponse other = exchangeRateService.getExchangeRates(baseCurrency, Set.of("USD"));
+        
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(new BigDecimal("1.070000"), other.getRates().get("USD"));
+    }
+
+    @Test
+    void testBatchFetchesEachNeededTableOnce() {
+        // EUR, USD and GBP queries all come from the one EUR pivot table
+        when(mockApiClient1.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.86")));
+        when(mockApiClient2.getExchangeRates("EUR", FULL_TABLE)).thenReturn(Map.of(
+            "USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.86")));
+        
+        List<BatchResult> results = exchangeRateService.getExchangeRatesBatch(List.of(
+            CacheKey.of("EUR", Set.of("USD")),
+            CacheKey.of("USD", Set.of("GBP")),
+            CacheKey.of("EUR", Set.of("GBP")),
+            CacheKey.of("GBP", Set.of("QQQ")))).block();
+        
+        assertEquals(4, results.size());
+        assertEquals(new BigDecimal("1.080000"), results.get(0).getRates().get("USD"));
+        assertEquals(new BigDecimal("0.796296"), results.get(1).getRates().get("GBP"));
+        assertEquals(new BigDecimal("0.860000"), results.get(2).getRates().get("GBP"));
+        assertEquals("GBP", results.get(3).getBase());
+        assertEquals("No exchange rates found", results.get(3).getError());
+        verify(mockApiClient1, times(1)).getExchangeRates("EUR", FULL_TABLE);
+        verify(mockApiClient2, times(1)).getExchangeRates("EUR", FULL_TABLE);
+    }
+
+    @Test
+    void testStreamSendsSnapshotThenOnlyChangedRates() {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setCacheTtl(Duration.ofMillis(100));
+        properties.setRefreshRetryInterval(Duration.ZERO);
+        ExchangeRateService streamService = new ExchangeRateService(
+            Arrays.asList(mockApiClient1, mockApiClient2), mockMetricsService, properties,
+            providerExecutor);
+        
+        when(mockApiClient1.getExchangeRates("EUR", FULL_TABLE))
+            .thenReturn(Map.of("USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.86")))
+            .thenReturn(Map.of("USD", new BigDecimal("1.10"), "GBP", new BigDecimal("0.86")));
+        when(mockApiClient2.getExchangeRates("EUR", FULL_TABLE))
+            .thenReturn(Map.of("USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.86")))
+            .thenReturn(Map.of("USD", new BigDecimal("1.10"), "GBP", new BigDecimal("0.86")));
+        
+        StepVerifier.create(streamService.streamExchangeRates(CacheKey.of("EUR", Set.of("USD", "GBP"))))
+            .assertNext(snapshot -> assertEquals(Map.of(
+                "USD", new BigDecimal("1.080000"), "GBP", new BigDecimal("0.860000")), snapshot.getRates()))
+            .then(() -> {
+                // A stale read kicks off the background refresh that brings the new USD rate
+                try {
+                    Thread.sleep(150);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                streamService.getExchangeRates("EUR", Set.of("USD"));
+            })
+            .assertNext(update -> assertEquals(Map.of("USD", new BigDecimal("1.100000")), update.getRates()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(5));
+        
+        verify(mockMetricsService).incrementActiveStreams();
+        verify(mockMetricsService).decrementActiveStreams();
+    }
+
 }
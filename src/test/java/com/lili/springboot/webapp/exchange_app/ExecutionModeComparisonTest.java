@@ -0,0 +1,138 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.LoggerFactory;
+
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties.ExecutionMode;
+import com.lili.springboot.webapp.exchange_app.service.ExchangeRateApiClient;
+import com.lili.springboot.webapp.exchange_app.service.ExchangeRateService;
+import com.lili.springboot.webapp.exchange_app.service.MetricsService;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Compares throughput and p99 latency of cache misses on platform threads versus virtual threads.
+ *
+ * Requests arrive at a fixed rate and each one is a distinct cache miss served by two blocking
+ * providers. In platform mode requests run on a 200-thread pool (Tomcat's default maximum),
+ * in virtual mode every request and every provider call gets its own virtual thread.
+ * Latency is measured from the intended arrival time, so queueing behind a saturated pool is counted.
+ *
+ * Not part of the regular build, run it with:
+ *   mvn test -Dtest=ExecutionModeComparisonTest -DcompareExecutionModes=true
+ */
+@EnabledIfSystemProperty(named = "compareExecutionModes", matches = "true")
+class ExecutionModeComparisonTest {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final long PROVIDER_LATENCY_MS = 50;
+    private static final int REQUESTS_PER_SECOND = Integer.getInteger("compare.rate", 8000);
+    private static final int DURATION_SECONDS = Integer.getInteger("compare.seconds", 3);
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        ((Logger) LoggerFactory.getLogger("com.lili")).setLevel(Level.WARN);
+
+        Result platform = run(ExecutionMode.PLATFORM);
+        Result virtual = run(ExecutionMode.VIRTUAL);
+
+        System.out.printf("%-10s %12s %10s %10s%n", "mode", "req/s", "p50 ms", "p99 ms");
+        System.out.println(platform);
+        System.out.println(virtual);
+
+        assertEquals(platform.requests, virtual.requests);
+    }
+
+    private Result run(ExecutionMode mode) throws Exception {
+        ExecutorService requestExecutor = mode == ExecutionMode.VIRTUAL
+            ? Executors.newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        ExecutorService providerExecutor = mode == ExecutionMode.VIRTUAL
+            ? Executors.newVirtualThreadPerTaskExecutor()
+            : Executors.newCachedThreadPool();
+
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setExecutionMode(mode);
+        // Every request has to reach the providers, so no base may be derived from a pivot table
+        properties.setTriangulate(false);
+        List<ExchangeRateApiClient> clients = Arrays.asList(new SleepingClient("api1"), new SleepingClient("api2"));
+        ExchangeRateService service = new ExchangeRateService(clients, new MetricsService(), properties, providerExecutor);
+
+        int requests = REQUESTS_PER_SECOND * DURATION_SECONDS;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / REQUESTS_PER_SECOND;
+        long[] latencies = new long[requests];
+        CountDownLatch done = new CountDownLatch(requests);
+        AtomicInteger failures = new AtomicInteger();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            long intendedStart = start + i * intervalNanos;
+            while (System.nanoTime() < intendedStart) {
+                Thread.onSpinWait();
+            }
+            int request = i;
+            requestExecutor.execute(() -> {
+                try {
+                    service.getExchangeRates("C" + request, Set.of("USD"));
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    latencies[request] = System.nanoTime() - intendedStart;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        requestExecutor.shutdown();
+        providerExecutor.shutdown();
+
+        Arrays.sort(latencies);
+        return new Result(mode, requests, failures.get(), requests * 1e9 / elapsed,
+            latencies[requests / 2] / 1e6, latencies[(int) (requests * 0.99)] / 1e6);
+    }
+
+    private record Result(ExecutionMode mode, int requests, int failures, double throughput,
+                          double p50Millis, double p99Millis) {
+        @Override
+        public String toString() {
+            return String.format("%-10s %12.0f %10.1f %10.1f%s", mode, throughput, p50Millis, p99Millis,
+                failures > 0 ? " (" + failures + " failures)" : "");
+        }
+    }
+
+    // Blocking provider that takes a fixed time to answer
+    private record SleepingClient(String name) implements ExchangeRateApiClient {
+        @Override
+        public String getApiName() {
+            return name;
+        }
+
+        @Override
+        public Map<String, BigDecimal> getExchangeRates(String baseCurrency, Set<String> symbols) {
+            try {
+                Thread.sleep(PROVIDER_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Map.of("USD", BigDecimal.ONE);
+        }
+    }
+}
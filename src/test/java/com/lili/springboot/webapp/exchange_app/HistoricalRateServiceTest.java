@@ -0,0 +1,96 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+import com.lili.springboot.webapp.exchange_app.service.ExchangeRateService;
+import com.lili.springboot.webapp.exchange_app.service.FrankfurterApiClient;
+import com.lili.springboot.webapp.exchange_app.service.HistoricalRateService;
+import com.lili.springboot.webapp.exchange_app.service.HistoricalRateStore;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Tests for HistoricalRateService: live recording and Frankfurter backfill into a real store
+ */
+@ExtendWith(MockitoExtension.class)
+class HistoricalRateServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private FrankfurterApiClient frankfurterApiClient;
+
+    @Mock
+    private ExchangeRateService exchangeRateService;
+
+    private final Sinks.Many<RateTable> tableUpdates = Sinks.many().multicast().directBestEffort();
+    private HistoricalRateStore store;
+    private HistoricalRateService historicalRateService;
+
+    @BeforeEach
+    void setUp() {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setHistoryDirectory(directory.toString());
+        properties.setHistoryBackfillDays(3);
+        store = new HistoricalRateStore(properties);
+        when(exchangeRateService.tableUpdates()).thenReturn(tableUpdates.asFlux());
+        historicalRateService = new HistoricalRateService(store, frankfurterApiClient, exchangeRateService, properties);
+        historicalRateService.startRecording();
+    }
+
+    @AfterEach
+    void tearDown() {
+        historicalRateService.stopRecording();
+        store.destroy();
+    }
+
+    @Test
+    void testPublishedRatesReplaceTheLiveTableRecordedTheSameDay() throws Exception {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        // La primera tabla en vivo del día se guarda mientras Frankfurter no ha publicado ese día
+        tableUpdates.tryEmitNext(RateTable.of("EUR", Map.of("USD", new BigDecimal("1.0812")), Instant.now()));
+        for (int i = 0; i < 100 && store.find("EUR", today) == null; i++) {
+            Thread.sleep(20);
+        }
+        assertNotNull(store.find("EUR", today));
+        assertEquals(new BigDecimal("1.0812"), store.find("EUR", today).getRate("USD"));
+
+        // El backfill vuelve a pedir los últimos días y la tasa oficial reemplaza a la promediada
+        when(frankfurterApiClient.fetchRateSeries(eq("EUR"), any(LocalDate.class), eq(today)))
+            .thenReturn(Mono.just(Map.of(
+                today.minusDays(1), Map.of("USD", new BigDecimal("1.0790")),
+                today, Map.of("USD", new BigDecimal("1.0805")))));
+        historicalRateService.backfill();
+
+        assertEquals(new BigDecimal("1.0805"), store.find("EUR", today).getRate("USD"));
+        assertEquals(new BigDecimal("1.0790"), store.find("EUR", today.minusDays(1)).getRate("USD"));
+        // Una tabla en vivo posterior ya no pisa el día publicado
+        tableUpdates.tryEmitNext(RateTable.of("EUR", Map.of("USD", new BigDecimal("1.0850")), Instant.now()));
+        Thread.sleep(100);
+        assertEquals(new BigDecimal("1.0805"), store.find("EUR", today).getRate("USD"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+import com.lili.springboot.webapp.exchange_app.service.HistoricalRateStore;
+
+/**
+ * Tests for the memory-mapped, append-only HistoricalRateStore
+ */
+class HistoricalRateStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testTablesSurviveReopenAndLaterAppendsWin() {
+        HistoricalRateStore store = open();
+        TreeMap<LocalDate, RateTable> days = new TreeMap<>();
+        days.put(LocalDate.of(2023, 12, 29), table("1.1050", "0.8671"));
+        days.put(LocalDate.of(2024, 1, 2), table("1.0956", "0.8651"));
+        store.appendAll("EUR", days);
+        store.append("EUR", LocalDate.of(2024, 1, 2), table("1.0957", "0.8652"));
+        store.destroy();
+        
+        // Los segmentos se vuelven a indexar desde disco, el último registro del día gana
+        HistoricalRateStore reopened = open();
+        assertEquals(new BigDecimal("1.1050"), reopened.find("EUR", LocalDate.of(2023, 12, 29)).getRate("USD"));
+        assertEquals(new BigDecimal("1.0957"), reopened.find("eur", LocalDate.of(2024, 1, 2)).getRate("USD"));
+        assertEquals(LocalDate.of(2024, 1, 2), reopened.lastDate("EUR"));
+        assertEquals("EUR", reopened.find("EUR", LocalDate.of(2024, 1, 2)).getBase());
+        reopened.destroy();
+    }
+
+    @Test
+    void testWeekendsResolveToLastPublishedDayAndRangesSpanYears() {
+        HistoricalRateStore store = open();
+        TreeMap<LocalDate, RateTable> days = new TreeMap<>();
+        days.put(LocalDate.of(2023, 12, 29), table("1.1050", "0.8671"));
+        days.put(LocalDate.of(2024, 1, 2), table("1.0956", "0.8651"));
+        days.put(LocalDate.of(2024, 1, 3), table("1.0919", "0.8629"));
+        store.appendAll("EUR", days);
+        
+        RateTable sunday = store.findOnOrBefore("EUR", LocalDate.of(2023, 12, 31));
+        assertEquals(new BigDecimal("1.1050"), sunday.getRate("USD"));
+        assertNull(store.find("EUR", LocalDate.of(2023, 12, 31)));
+        
+        assertEquals(List.of(LocalDate.of(2023, 12, 29), LocalDate.of(2024, 1, 2)),
+            List.copyOf(store.findRange("EUR", LocalDate.of(2023, 12, 1), LocalDate.of(2024, 1, 2)).keySet()));
+        // Bases sin historial no se crean ni salen del directorio
+        assertNull(store.findOnOrBefore("../EUR", LocalDate.of(2024, 1, 2)));
+        assertNull(store.lastDate("USD"));
+        store.destroy();
+    }
+
+    @Test
+    void testIncompleteTrailingRecordIsDropped() throws IOException {
+        HistoricalRateStore store = open();
+        store.append("EUR", LocalDate.of(2024, 1, 2), table("1.0956", "0.8651"));
+        store.destroy();
+        
+        // Simula un corte a mitad de un append: cabecera de registro sin sus entradas
+        Path segment = directory.resolve("EUR").resolve("2024.seg");
+        Files.write(segment, new byte[] {0, 0, 0x4D, 0x3F, 0, 2, 3}, StandardOpenOption.APPEND);
+        
+        HistoricalRateStore reopened = open();
+        assertEquals(new BigDecimal("1.0956"), reopened.find("EUR", LocalDate.of(2024, 1, 2)).getRate("USD"));
+        reopened.append("EUR", LocalDate.of(2024, 1, 3), table("1.0919", "0.8629"));
+        assertEquals(new BigDecimal("0.8629"), reopened.find("EUR", LocalDate.of(2024, 1, 3)).getRate("GBP"));
+        reopened.destroy();
+    }
+
+    private HistoricalRateStore open() {
+        ExchangeRateProperties properties = new ExchangeRateProperties();
+        properties.setHistoryDirectory(directory.toString());
+        return new HistoricalRateStore(properties);
+    }
+
+    private RateTable table(String usd, String gbp) {
+        return RateTable.of("EUR", Map.of("USD", new BigDecimal(usd), "GBP", new BigDecimal(gbp)), Instant.now());
+    }
+}
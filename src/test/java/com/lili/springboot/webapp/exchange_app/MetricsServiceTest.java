@@ -1,14 +1,23 @@
 package com.lili.springboot.webapp.exchange_app;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.lili.springboot.webapp.exchange_app.config.ExchangeRateProperties;
+import com.lili.springboot.webapp.exchange_app.model.LatencySummary;
 import com.lili.springboot.webapp.exchange_app.model.MetricsResponse;
 import com.lili.springboot.webapp.exchange_app.service.MetricsService;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 public class MetricsServiceTest {
 
      private MetricsService metricsService;
@@ -52,4 +61,89 @@ public class MetricsServiceTest {
         assertEquals(0, metrics.getTotalQueries());
         assertTrue(metrics.getApis().isEmpty());
     }
+    
+    @Test
+    void testMetricsReset_KeepsProviderMetersRegistered() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricsService service = new MetricsService(registry, new ExchangeRateProperties());
+        service.incrementApiRequests("testApi");
+        service.incrementApiRequests("testApi");
+        
+        // El reset pone los contadores a cero pero el medidor sigue publicado
+        service.resetMetrics();
+        assertEquals(0, registry.get("exchange.provider.requests").tag("provider", "testApi").functionCounter().count(), 0);
+        
+        service.incrementApiRequests("testApi");
+        assertEquals(1, registry.get("exchange.provider.requests").tag("provider", "testApi").functionCounter().count(), 0);
+        assertEquals(1, service.getMetrics().getApis().size());
+        assertEquals(1, service.getMetrics().getApis().get(0).getTotalRequests());
+    }
+    
+    @Test
+    void testLatencyPercentiles() {
+        // 1000 llamadas de 1..1000 ms al proveedor, y un acierto y un fallo de cache
+        metricsService.incrementApiRequests("testApi");
+        for (int millis = 1; millis <= 1000; millis++) {
+            metricsService.recordApiLatency("testApi", millis * 1_000_000L);
+        }
+        metricsService.recordCacheLatency(true, 50_000);
+        metricsService.recordCacheLatency(false, 200_000_000);
+        metricsService.recordEndpointLatency("GET /exchangeRates/{baseCurrency}", 3_000_000);
+        
+        MetricsResponse metrics = metricsService.getMetrics();
+        LatencySummary api = metrics.getApis().get(0).getLatency();
+        assertNotNull(api);
+        assertEquals(1000, api.getCount());
+        assertEquals(1000, api.getMax(), 0.001);
+        // Percentiles aproximados con 2 digitos significativos
+        assertEquals(500, api.getP50(), 20);
+        assertEquals(990, api.getP99(), 40);
+        assertTrue(api.getP999() >= api.getP99());
+        
+        assertEquals(1, metrics.getCacheHitLatency().getCount());
+        assertEquals(200, metrics.getCacheMissLatency().getMax(), 0.001);
+        assertEquals(1, metrics.getEndpoints().get("GET /exchangeRates/{baseCurrency}").getCount());
+    }
+    
+    @Test
+    void testConcurrentCountersAreExactAndExported() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricsService service = new MetricsService(registry, new ExchangeRateProperties());
+        int threads = 8;
+        int increments = 50_000;
+        
+        // Todos los hilos incrementan los mismos contadores a la vez
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int n = 0; n < increments; n++) {
+                    service.incrementTotalQueries();
+                    service.incrementApiRequests("testApi");
+                    service.recordCacheLatency(n % 2 == 0, 1_000);
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        
+        // Ningun incremento perdido, y los meters de Micrometer leen los mismos valores
+        long expected = (long) threads * increments;
+        MetricsResponse metrics = service.getMetrics();
+        assertEquals(expected, metrics.getTotalQueries());
+        assertEquals(expected, metrics.getApis().get(0).getTotalRequests());
+        assertEquals(expected / 2, metrics.getCacheHits());
+        assertEquals(expected / 2, metrics.getCacheMisses());
+        assertEquals(expected, registry.get("exchange.queries").functionCounter().count(), 0);
+        assertEquals(expected, registry.get("exchange.provider.requests").tag("provider", "testApi").functionCounter().count(), 0);
+        assertEquals(expected / 2, registry.get("exchange.cache.requests").tag("result", "miss").functionCounter().count(), 0);
+    }
 }
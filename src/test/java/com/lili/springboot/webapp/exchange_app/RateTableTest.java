@@ -0,0 +1,79 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.lili.springboot.webapp.exchange_app.model.CurrencyRegistry;
+import com.lili.springboot.webapp.exchange_app.model.RateTable;
+
+/**
+ * Tests for the ordinal-indexed, fixed-point RateTable and the CurrencyRegistry behind it
+ */
+class RateTableTest {
+
+    @Test
+    void testRatesRoundTripThroughFixedPointSlots() {
+        Map<String, BigDecimal> rates = Map.of(
+            "USD", new BigDecimal("1.0812"),
+            "BTC", new BigDecimal("0.0000096123"),
+            "VND", new BigDecimal("27458.5"),
+            "1INCH", new BigDecimal("3.75"));
+        
+        RateTable table = RateTable.of("EUR", rates, Instant.now());
+        
+        assertEquals(4, table.size());
+        assertEquals(rates, table.getRates());
+        assertEquals(new BigDecimal("0.0000096123"), table.getRate("BTC"));
+        assertEquals(new BigDecimal("3.75"), table.getRate("1INCH"));
+    }
+
+    @Test
+    void testRatesAreKeptAtSixteenSignificantDigits() {
+        RateTable table = RateTable.of("EUR", Map.of("USD", new BigDecimal("1.08123456789012345678")), Instant.now());
+        
+        assertEquals(new BigDecimal("1.081234567890123"), table.getRate("USD"));
+    }
+
+    @Test
+    void testLookupsOfUnknownCodesDontRegisterThem() {
+        int registered = CurrencyRegistry.size();
+        RateTable table = RateTable.of("EUR", Map.of("USD", BigDecimal.ONE), Instant.now());
+        
+        assertNull(table.getRate("QQZ"));
+        assertFalse(table.hasRate("NOT-A-CODE"));
+        assertEquals(-1, CurrencyRegistry.find("QQZ"));
+        assertTrue(CurrencyRegistry.size() <= registered + 1);
+    }
+
+    @Test
+    void testCodesShareOneOrdinalAcrossTables() {
+        RateTable eur = RateTable.of("EUR", Map.of("GBP", new BigDecimal("0.85")), Instant.now());
+        RateTable usd = RateTable.of("USD", Map.of("GBP", new BigDecimal("0.79")), Instant.now());
+        int gbp = CurrencyRegistry.find("GBP");
+        
+        assertEquals("GBP", CurrencyRegistry.code(gbp));
+        assertEquals(new BigDecimal("0.85"), eur.getRate(gbp));
+        assertEquals(new BigDecimal("0.79"), usd.getRate(gbp));
+    }
+
+    @Test
+    void testVersionFollowsTheRatesNotTheFetchTime() {
+        Map<String, BigDecimal> rates = Map.of("USD", new BigDecimal("1.08"), "GBP", new BigDecimal("0.85"));
+        RateTable first = RateTable.of("EUR", rates, Instant.parse("2024-01-01T10:00:00Z"));
+        RateTable refetched = RateTable.of("EUR", rates, Instant.parse("2024-01-01T10:05:00Z"));
+        RateTable changed = RateTable.of("EUR", Map.of("USD", new BigDecimal("1.09"), "GBP", new BigDecimal("0.85")), Instant.now());
+        
+        assertEquals(first.getVersion(), refetched.getVersion());
+        assertNotEquals(first.getVersion(), changed.getVersion());
+        assertNotEquals(first.getVersion(), RateTable.of("USD", rates, Instant.now()).getVersion());
+    }
+}
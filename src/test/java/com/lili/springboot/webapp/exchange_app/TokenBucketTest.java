@@ -0,0 +1,67 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.lili.springboot.webapp.exchange_app.service.TokenBucket;
+
+/**
+ * Tests for the per-client TokenBucket, with explicit nanoTime values instead of sleeps
+ */
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testBurstIsAllowedThenRequestsWaitForTheRate() {
+        long now = 1_000 * SECOND;
+        TokenBucket bucket = new TokenBucket(10, 5, now);
+        
+        // Un cliente nuevo puede gastar toda la ráfaga de golpe
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(now));
+        }
+        
+        // La siguiente petición tiene que esperar un intervalo (100 ms a 10 por segundo)
+        long wait = bucket.tryAcquire(now);
+        assertEquals(SECOND / 10, wait);
+        assertEquals(0, bucket.tryAcquire(now + wait));
+        assertTrue(bucket.tryAcquire(now + wait) > 0);
+    }
+
+    @Test
+    void testSeveralTokensAreTakenAtOnceOrNotAtAll() {
+        long now = 0;
+        TokenBucket bucket = new TokenBucket(10, 5, now);
+        
+        assertEquals(0, bucket.tryAcquire(now, 3));
+        // Quedan 2 tokens: pedir 3 falla sin gastar nada, y faltaba uno (100 ms)
+        assertEquals(SECOND / 10, bucket.tryAcquire(now, 3));
+        assertEquals(0, bucket.tryAcquire(now, 2));
+        
+        // Una petición más cara que la ráfaga cuesta la ráfaga entera, si no nunca entraría
+        assertEquals(0, bucket.tryAcquire(now + SECOND, 50));
+        assertTrue(bucket.tryAcquire(now + SECOND, 1) > 0);
+    }
+
+    @Test
+    void testIdleBucketRefillsOnlyUpToItsBurst() {
+        long now = -5 * SECOND;
+        TokenBucket bucket = new TokenBucket(10, 3, now);
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(now);
+        }
+        
+        // Tras mucho tiempo sin uso (incluso cruzando el desbordamiento de nanoTime) solo vuelve la ráfaga
+        long later = now + Long.MAX_VALUE / 2;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(later));
+        }
+        assertTrue(bucket.tryAcquire(later) > 0);
+        assertEquals(3 * SECOND / 10, bucket.refillNanos());
+    }
+}
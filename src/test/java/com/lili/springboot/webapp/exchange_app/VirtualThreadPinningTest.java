@@ -0,0 +1,98 @@
+package com.lili.springboot.webapp.exchange_app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.lili.springboot.webapp.exchange_app.service.FrankfurterApiClient;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Guards the blocking client path against pinning when it runs on virtual threads
+ * (execution-mode: virtual). A virtual thread that parks while holding a monitor pins its
+ * carrier thread, which JFR reports as a jdk.VirtualThreadPinned event.
+ */
+class VirtualThreadPinningTest {
+
+    private static final int CALLS = 20;
+
+    private MockWebServer mockWebServer;
+    private FrankfurterApiClient frankfurterClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+
+        WebClient.Builder webClientBuilder = WebClient.builder()
+            .baseUrl(mockWebServer.url("/").toString());
+        frankfurterClient = new FrankfurterApiClient(webClientBuilder);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void testBlockingClientDoesNotPinVirtualThreads() throws Exception {
+        for (int i = 0; i < CALLS; i++) {
+            mockWebServer.enqueue(new MockResponse()
+                .setBody("{\"base\":\"EUR\",\"rates\":{\"USD\":1.08}}")
+                .setBodyDelay(20, TimeUnit.MILLISECONDS)
+                .addHeader("Content-Type", "application/json"));
+        }
+
+        Path dump = Files.createTempFile("virtual-thread-pinning", ".jfr");
+        List<Map<String, BigDecimal>> results = new ArrayList<>();
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Map<String, BigDecimal>>> futures = new ArrayList<>();
+                for (int i = 0; i < CALLS; i++) {
+                    futures.add(executor.submit(() -> frankfurterClient.getExchangeRates("EUR", Set.of("USD"))));
+                }
+                for (Future<Map<String, BigDecimal>> future : futures) {
+                    results.add(future.get());
+                }
+            }
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> pinned = RecordingFile.readAllEvents(dump).stream()
+            .filter(event -> event.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+            .toList();
+        Files.deleteIfExists(dump);
+
+        assertEquals(CALLS, results.size());
+        results.forEach(rates -> assertEquals(new BigDecimal("1.08"), rates.get("USD")));
+        assertTrue(pinned.isEmpty(), () -> "Virtual threads were pinned: " + pinned);
+    }
+}